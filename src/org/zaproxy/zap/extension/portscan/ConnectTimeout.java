@@ -0,0 +1,86 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.portscan;
+
+/**
+ * The time to wait for the connects to a host.
+ * <p>
+ * If adaptive, the timeout is learned from the round trip times of the connects which got an answer (open or
+ * refused), using the same smoothed estimator as the TCP retransmission timer (RFC 6298). The configured timeout is
+ * used until enough samples were taken and is never exceeded, so a host which drops the packets of most ports is
+ * scanned with much shorter waits than the configured ones.
+ */
+class ConnectTimeout {
+
+	/**
+	 * The number of round trip times needed before the learned timeout is used.
+	 */
+	private static final int MIN_SAMPLES = 8;
+
+	/**
+	 * The lower bound of the learned timeout, to allow for some jitter on very fast (e.g. local) hosts.
+	 */
+	private static final int MIN_TIMEOUT_IN_MS = 50;
+
+	private final int timeoutInMs;
+	private final boolean adaptive;
+
+	private int samples;
+	private double srtt;
+	private double rttvar;
+
+	/**
+	 * @param timeoutInMs the configured timeout, {@code 0} for none
+	 * @param adaptive {@code true} if the timeout should be learned from the round trip times
+	 */
+	ConnectTimeout(int timeoutInMs, boolean adaptive) {
+		this.timeoutInMs = Math.max(0, timeoutInMs);
+		this.adaptive = adaptive;
+	}
+
+	/**
+	 * Returns the timeout to use for the next connect, {@code 0} for none.
+	 */
+	synchronized int getTimeoutInMs() {
+		if (!adaptive || samples < MIN_SAMPLES) {
+			return timeoutInMs;
+		}
+		int timeout = (int) Math.max(MIN_TIMEOUT_IN_MS, Math.ceil(srtt + 4 * rttvar));
+		if (timeoutInMs > 0) {
+			timeout = Math.min(timeout, timeoutInMs);
+		}
+		return timeout;
+	}
+
+	/**
+	 * Adds the round trip time of a connect which was answered by the host.
+	 */
+	synchronized void addRoundTripTime(long rttInMs) {
+		if (!adaptive) {
+			return;
+		}
+		if (samples == 0) {
+			srtt = rttInMs;
+			rttvar = rttInMs / 2.0;
+		} else {
+			rttvar = 0.75 * rttvar + 0.25 * Math.abs(srtt - rttInMs);
+			srtt = 0.875 * srtt + 0.125 * rttInMs;
+		}
+		samples++;
+	}
+}
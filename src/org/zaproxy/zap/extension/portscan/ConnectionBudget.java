@@ -0,0 +1,87 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.portscan;
+
+/**
+ * The number of connects which can be in flight at the same time, shared by all the port scans (of all hosts, with
+ * or without proxy) so that many hosts can be scanned without running out of file descriptors.
+ * <p>
+ * The limit is read from the options each time, so changes apply to the scans already running. If the process runs
+ * out of file descriptors the limit is further lowered to the number of connects in use, until all of them are
+ * released.
+ */
+class ConnectionBudget {
+
+	private final PortScanParam param;
+	private int inUse;
+	private int descriptorLimit = Integer.MAX_VALUE;
+
+	ConnectionBudget(PortScanParam param) {
+		this.param = param;
+	}
+
+	private int getLimit() {
+		return Math.max(1, Math.min(param.getMaxInFlight(), descriptorLimit));
+	}
+
+	/**
+	 * Takes a connect from the budget, if any is available.
+	 */
+	synchronized boolean tryAcquire() {
+		if (inUse >= getLimit()) {
+			return false;
+		}
+		inUse++;
+		return true;
+	}
+
+	/**
+	 * Takes a connect from the budget, waiting up to the given time for one to be available.
+	 */
+	synchronized boolean tryAcquire(long timeoutInMs) throws InterruptedException {
+		long end = System.currentTimeMillis() + timeoutInMs;
+		while (!tryAcquire()) {
+			long remaining = end - System.currentTimeMillis();
+			if (remaining <= 0) {
+				return false;
+			}
+			wait(remaining);
+		}
+		return true;
+	}
+
+	synchronized void release() {
+		inUse--;
+		if (inUse == 0) {
+			descriptorLimit = Integer.MAX_VALUE;
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Lowers the limit to the connects currently in use, after failing to open a socket. Returns {@code false} if none
+	 * is in use, in which case no socket can be opened at all.
+	 */
+	synchronized boolean limitToInUse() {
+		if (inUse == 0) {
+			return false;
+		}
+		descriptorLimit = inUse;
+		return true;
+	}
+}
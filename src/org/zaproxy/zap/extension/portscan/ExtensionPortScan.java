@@ -23,10 +23,11 @@ import java.awt.EventQueue;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
-
-import javax.swing.DefaultListModel;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 import org.parosproxy.paros.Constant;
@@ -55,9 +56,14 @@ public class ExtensionPortScan extends ExtensionAdaptor
 	
     private PortScanPanel portScanPanel = null;
     private PopupMenuPortScan popupMenuPortScan = null;
+    private PopupMenuPortScanResume popupMenuPortScanResume = null;
+    private PopupMenuPortScanAllSites popupMenuPortScanAllSites = null;
     private OptionsPortScanPanel optionsPortScanPanel = null;
     private PopupMenuPortCopy popupMenuPortCopy = null;
     private PortScanParam params = null;
+    private ConnectionBudget connectionBudget = null;
+    private NioConnectScanner connectScanner = null;
+    private ServiceDetector serviceDetector = null;
 
     /**
      *
@@ -96,6 +102,8 @@ public class ExtensionPortScan extends ExtensionAdaptor
             extensionHook.getHookView().addStatusPanel(getPortScanPanel());
             extensionHook.getHookView().addOptionPanel(getOptionsPortScanPanel());
             extensionHook.getHookMenu().addPopupMenuItem(getPopupMenuPortScan());
+            extensionHook.getHookMenu().addPopupMenuItem(getPopupMenuPortScanResume());
+            extensionHook.getHookMenu().addPopupMenuItem(getPopupMenuPortScanAllSites());
             extensionHook.getHookMenu().addPopupMenuItem(getPopupMenuPortCopy());
 
             ExtensionHelp.enableHelpKey(getPortScanPanel(), "addon.portscan.tab");
@@ -113,6 +121,12 @@ public class ExtensionPortScan extends ExtensionAdaptor
 	    if (getView() != null) {
 	        getPortScanPanel().unload();
 	    }
+	    synchronized (this) {
+	        if (serviceDetector != null) {
+	            serviceDetector.shutdown();
+	            serviceDetector = null;
+	        }
+	    }
 	    super.unload();
     }
 
@@ -124,6 +138,36 @@ public class ExtensionPortScan extends ExtensionAdaptor
         return params;
     }
 
+    /**
+     * Returns the budget of connects shared by all the port scans.
+     */
+    synchronized ConnectionBudget getConnectionBudget() {
+        if (connectionBudget == null) {
+            connectionBudget = new ConnectionBudget(getPortScanParam());
+        }
+        return connectionBudget;
+    }
+
+    /**
+     * Returns the engine shared by all the port scans not using a proxy.
+     */
+    synchronized NioConnectScanner getConnectScanner() {
+        if (connectScanner == null) {
+            connectScanner = new NioConnectScanner(getConnectionBudget(), getPortScanParam());
+        }
+        return connectScanner;
+    }
+
+    /**
+     * Returns the detector of services shared by all the port scans.
+     */
+    synchronized ServiceDetector getServiceDetector() {
+        if (serviceDetector == null) {
+            serviceDetector = new ServiceDetector();
+        }
+        return serviceDetector;
+    }
+
     protected PortScanPanel getPortScanPanel() {
         if (portScanPanel == null) {
             portScanPanel = new PortScanPanel(this, getPortScanParam());
@@ -204,6 +248,22 @@ public class ExtensionPortScan extends ExtensionAdaptor
         return popupMenuPortScan;
     }
 
+    private PopupMenuPortScanResume getPopupMenuPortScanResume() {
+        if (popupMenuPortScanResume == null) {
+            popupMenuPortScanResume = new PopupMenuPortScanResume(Constant.messages.getString("ports.site.popup.resume"));
+            popupMenuPortScanResume.setExtension(this);
+        }
+        return popupMenuPortScanResume;
+    }
+
+    private PopupMenuPortScanAllSites getPopupMenuPortScanAllSites() {
+        if (popupMenuPortScanAllSites == null) {
+            popupMenuPortScanAllSites = new PopupMenuPortScanAllSites(Constant.messages.getString("ports.site.popup.all"));
+            popupMenuPortScanAllSites.setExtension(this);
+        }
+        return popupMenuPortScanAllSites;
+    }
+
     private OptionsPortScanPanel getOptionsPortScanPanel() {
         if (optionsPortScanPanel == null) {
             optionsPortScanPanel = new OptionsPortScanPanel();
@@ -223,6 +283,41 @@ public class ExtensionPortScan extends ExtensionAdaptor
         this.getPortScanPanel().scanSite(node, false);
     }
 
+    /**
+     * Starts the port scan of the given site from where the last one was stopped (or crashed), if it saved a
+     * checkpoint, otherwise from the first port.
+     */
+    protected void resumePortScanSite(SiteNode node) {
+        this.getPortScanPanel().resumeNextScan(node.getNodeName());
+        this.portScanSite(node);
+    }
+
+    /**
+     * Tells whether there's a checkpoint of the port scan of the site of the given node.
+     */
+    public boolean canResumePortScan(SiteNode node) {
+        while (node.getParent() != null && node.getParent().getParent() != null) {
+            node = (SiteNode) node.getParent();
+        }
+        return PortScanCheckpoint.exists(PortScanPanel.cleanSiteName(node.getNodeName(), false));
+    }
+
+    /**
+     * Starts the port scan of all the hosts in the sites tree. The scans share the connects in flight allowed
+     * by the options, so any number of hosts can be scanned at the same time.
+     */
+    public void portScanAllSites() {
+        SiteNode root = (SiteNode) getModel().getSession().getSiteTree().getRoot();
+        @SuppressWarnings("unchecked")
+        Enumeration<SiteNode> en = root.children();
+        while (en.hasMoreElements()) {
+            SiteNode node = en.nextElement();
+            if (! this.isScanning(node)) {
+                this.portScanSite(node);
+            }
+        }
+    }
+
     public int getThreadPerScan() {
         return this.getOptionsPortScanPanel().getThreadPerScan();
     }
@@ -240,9 +335,24 @@ public class ExtensionPortScan extends ExtensionAdaptor
         StringBuilder xml = new StringBuilder();
         List<Integer> ports = getPorts(site);
         if(ports!=null) {
+            Map<Integer, String> services = getServices(site);
             xml.append("<portscan>");
             for (Integer port : ports) {
-                xml.append("<port number=\"" + port.toString() + "\" state=\"open\" proto=\"tcp\"/>\n");
+                xml.append("<port number=\"" + port.toString() + "\" state=\"open\" proto=\"tcp\"");
+                String service = services.get(port);
+                if (service != null) {
+                    xml.append(" service=\"" + service + "\"");
+                }
+                xml.append("/>\n");
+            }
+            Map<Integer, String> udpServices = getUdpServices(site);
+            for (Integer port : getUdpPorts(site)) {
+                xml.append("<port number=\"" + port.toString() + "\" state=\"open\" proto=\"udp\"");
+                String service = udpServices.get(port);
+                if (service != null) {
+                    xml.append(" service=\"" + service + "\"");
+                }
+                xml.append("/>\n");
             }
             xml.append("</portscan>");
         }
@@ -253,11 +363,10 @@ public class ExtensionPortScan extends ExtensionAdaptor
         String siteName = PortScanPanel.cleanSiteName(site, false);
         PortScan scan = (PortScan) getPortScanPanel().getScanThread(siteName);
         if (scan != null) {
-            DefaultListModel<Integer> portListModel = scan.getList();
-            int size = portListModel.getSize();
-            List<Integer> ports = new ArrayList<>(size);
-            for(int i=0; i<size; i++) {
-                ports.add(portListModel.get(i));
+            int[] openPorts = scan.getOpenPorts();
+            List<Integer> ports = new ArrayList<>(openPorts.length);
+            for (int port : openPorts) {
+                ports.add(port);
             }
             return ports;
         }
@@ -267,6 +376,74 @@ public class ExtensionPortScan extends ExtensionAdaptor
     public List<Integer> getPorts(SiteNode site) {
         return getPorts(site.getNodeName());
     }
+
+    /**
+     * Returns the UDP ports of the given site which answered the probes, empty if UDP ports were not probed or the
+     * site was not scanned.
+     */
+    public List<Integer> getUdpPorts(String site) {
+        String siteName = PortScanPanel.cleanSiteName(site, false);
+        PortScan scan = (PortScan) getPortScanPanel().getScanThread(siteName);
+        if (scan != null) {
+            int[] openPorts = scan.getOpenUdpPorts();
+            List<Integer> ports = new ArrayList<>(openPorts.length);
+            for (int port : openPorts) {
+                ports.add(port);
+            }
+            return ports;
+        }
+        return Collections.emptyList();
+    }
+
+    public List<Integer> getUdpPorts(SiteNode site) {
+        return getUdpPorts(site.getNodeName());
+    }
+
+    /**
+     * Returns the services detected on the open ports of the given site, by port. Empty if the detection is not
+     * enabled or the site was not scanned.
+     */
+    public Map<Integer, String> getServices(String site) {
+        String siteName = PortScanPanel.cleanSiteName(site, false);
+        PortScan scan = (PortScan) getPortScanPanel().getScanThread(siteName);
+        if (scan != null) {
+            return new HashMap<>(scan.getServices());
+        }
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Returns how many ports per second are being scanned on the given site, recently, or {@code 0} if not scanned.
+     */
+    public double getPortsPerSecond(String site) {
+        String siteName = PortScanPanel.cleanSiteName(site, false);
+        PortScan scan = (PortScan) getPortScanPanel().getScanThread(siteName);
+        if (scan != null) {
+            return scan.getPortsPerSecond();
+        }
+        return 0;
+    }
+
+    public Map<Integer, String> getServices(SiteNode site) {
+        return getServices(site.getNodeName());
+    }
+
+    /**
+     * Returns the services of the UDP ports of the given site which answered a request of a specific service, by
+     * port.
+     */
+    public Map<Integer, String> getUdpServices(String site) {
+        String siteName = PortScanPanel.cleanSiteName(site, false);
+        PortScan scan = (PortScan) getPortScanPanel().getScanThread(siteName);
+        if (scan != null) {
+            return new HashMap<>(scan.getUdpServices());
+        }
+        return Collections.emptyMap();
+    }
+
+    public Map<Integer, String> getUdpServices(SiteNode site) {
+        return getUdpServices(site.getNodeName());
+    }
     
 	@Override
 	public void sessionAboutToChange(Session session) {
@@ -0,0 +1,513 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.portscan;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.PortUnreachableException;
+import java.net.SocketException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A TCP connect scan engine which uses non-blocking {@link SocketChannel}s and a single {@link Selector}, so that
+ * thousands of connects, to any number of hosts, can be in flight at the same time from a single thread.
+ * <p>
+ * If a {@link ServiceDetector} is given the connections to the open ports are handed to it, rather than closed.
+ * <p>
+ * The hosts are served in turn, one connect each, within the limits of the shared {@link ConnectionBudget} and of
+ * the maximum connects in flight per host, so a sweep of many hosts doesn't overload any of them. The results of
+ * each host are delivered to its own {@link PortProbeListener} as they arrive.
+ * <p>
+ * Each connect has its own deadline, taken from the {@link ConnectTimeout} of the host when the connect starts, once
+ * reached the connect is abandoned and the port is considered closed. The thread is started when a host is submitted
+ * and ends once all the hosts are done.
+ * <p>
+ * The UDP ports of a host can be probed as well, in the same way: a connected {@link DatagramChannel} sends the
+ * request of {@link UdpPayloads} and the port is open if anything is received back before the deadline. When the host
+ * answers with an ICMP port unreachable the port is closed straight away, otherwise it can't be told apart from a
+ * port which silently ignored the request and is considered closed once the deadline is reached.
+ */
+class NioConnectScanner implements Runnable {
+
+	/**
+	 * How long to wait for events when there are no deadlines, for example, while paused.
+	 */
+	private static final int IDLE_SELECT_MS = 500;
+
+	/**
+	 * How long to wait for events when connects are waiting for the budget, which might be released by other
+	 * engines.
+	 */
+	private static final int BUDGET_SELECT_MS = 50;
+
+	/**
+	 * The size of the buffer the UDP replies are read into, only their arrival matters.
+	 */
+	private static final int REPLY_BUFFER_SIZE = 2048;
+
+	private static final Logger log = Logger.getLogger(NioConnectScanner.class);
+
+	private final ConnectionBudget budget;
+	private final PortScanParam param;
+	private final Queue<HostScan> submitted = new ConcurrentLinkedQueue<>();
+
+	// Only used by the thread of the engine
+	private final List<HostScan> hosts = new ArrayList<>();
+	private final PriorityQueue<Probe> deadlines = new PriorityQueue<>();
+	private final ByteBuffer replyBuffer = ByteBuffer.allocate(REPLY_BUFFER_SIZE);
+	// The local ports of the UDP probes sent to this machine, which might receive the probes sent to those ports
+	private final BitSet ownUdpPorts = new BitSet();
+	private int firstHost;
+
+	// Guarded by this
+	private Selector selector;
+	private Thread thread;
+
+	NioConnectScanner(ConnectionBudget budget, PortScanParam param) {
+		this.budget = budget;
+		this.param = param;
+	}
+
+	/**
+	 * Starts probing the given ports of a host, returns immediately.
+	 *
+	 * @param name the name of the host
+	 * @param address the address of the host
+	 * @param ports the ports to probe
+	 * @param timeout the time to wait for the connects
+	 * @param detector the detector of the services of the open ports, {@code null} to not detect them
+	 * @param listener the listener of the results
+	 */
+	HostScan submit(String name, InetAddress address, PortSource ports, ConnectTimeout timeout,
+			ServiceDetector detector, PortProbeListener listener) throws IOException {
+		return submit(new HostScan(name, address, ports, false, timeout, detector, listener));
+	}
+
+	/**
+	 * Starts probing the given UDP ports of a host, returns immediately.
+	 * <p>
+	 * The services of the ports which answer the request of a specific service are notified as detected.
+	 *
+	 * @param name the name of the host
+	 * @param address the address of the host
+	 * @param ports the ports to probe
+	 * @param timeout the time to wait for the replies, must not be {@code 0}
+	 * @param listener the listener of the results
+	 */
+	HostScan submitUdp(String name, InetAddress address, PortSource ports, ConnectTimeout timeout,
+			PortProbeListener listener) throws IOException {
+		return submit(new HostScan(name, address, ports, true, timeout, null, listener));
+	}
+
+	private HostScan submit(HostScan host) throws IOException {
+		synchronized (this) {
+			if (thread == null) {
+				selector = Selector.open();
+				submitted.add(host);
+				thread = new Thread(this, "ZAP-PortScan-connect");
+				thread.setDaemon(true);
+				thread.start();
+			} else {
+				submitted.add(host);
+				selector.wakeup();
+			}
+		}
+		return host;
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				synchronized (this) {
+					if (hosts.isEmpty() && submitted.isEmpty()) {
+						closeSelector();
+						return;
+					}
+				}
+				HostScan host;
+				while ((host = submitted.poll()) != null) {
+					hosts.add(host);
+				}
+
+				boolean waitingBudget = startConnects();
+
+				long wait = waitingBudget ? BUDGET_SELECT_MS : IDLE_SELECT_MS;
+				Probe next = nextPending();
+				if (next != null && next.deadline != Long.MAX_VALUE) {
+					wait = Math.max(1, Math.min(wait, next.deadline - System.currentTimeMillis()));
+				}
+				selector.select(wait);
+
+				Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+				while (it.hasNext()) {
+					SelectionKey key = it.next();
+					it.remove();
+					Probe probe = (Probe) key.attachment();
+					if (probe.host.udp) {
+						receiveReply(probe);
+					} else {
+						finishConnect(probe);
+					}
+				}
+
+				long now = System.currentTimeMillis();
+				while ((next = nextPending()) != null && next.deadline <= now) {
+					deadlines.poll();
+					finish(next, false);
+				}
+
+				for (Iterator<HostScan> hostIt = hosts.iterator(); hostIt.hasNext();) {
+					host = hostIt.next();
+					if (host.listener.isStopped()) {
+						host.abort();
+					}
+					if (host.isDone()) {
+						hostIt.remove();
+						host.completed.countDown();
+					}
+				}
+			}
+		} catch (Exception e) {
+			log.error("Port scan engine failed: " + e.getMessage(), e);
+			synchronized (this) {
+				hosts.addAll(submitted);
+				submitted.clear();
+				for (HostScan host : hosts) {
+					host.abort();
+					host.completed.countDown();
+				}
+				hosts.clear();
+				closeSelector();
+			}
+		}
+	}
+
+	private void closeSelector() {
+		try {
+			selector.close();
+		} catch (IOException e) {
+			// Ignore
+		}
+		selector = null;
+		thread = null;
+		ownUdpPorts.clear();
+	}
+
+	/**
+	 * Starts as many connects as allowed, one host at a time. Returns {@code true} if some host could start more
+	 * connects but the budget ran out.
+	 */
+	private boolean startConnects() {
+		int maxPerHost = Math.max(1, param.getMaxInFlightPerHost());
+		int size = hosts.size();
+		if (size == 0) {
+			return false;
+		}
+		// Don't always favour the same host when the budget runs out
+		firstHost = (firstHost + 1) % size;
+		boolean started = true;
+		while (started) {
+			started = false;
+			for (int i = 0; i < size; i++) {
+				HostScan host = hosts.get((firstHost + i) % size);
+				if (!host.canStart(maxPerHost)) {
+					continue;
+				}
+				if (!budget.tryAcquire()) {
+					return true;
+				}
+				if (host.startConnect()) {
+					started = true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private void finishConnect(Probe probe) {
+		SocketChannel channel = (SocketChannel) probe.channel;
+		boolean open;
+		try {
+			open = channel.finishConnect();
+			if (open) {
+				probe.host.timeout.addRoundTripTime(System.currentTimeMillis() - probe.started);
+			} else if (channel.isConnectionPending()) {
+				return;
+			}
+		} catch (ConnectException e) {
+			// Refused, which is an answer from the host as well
+			open = false;
+			probe.host.timeout.addRoundTripTime(System.currentTimeMillis() - probe.started);
+		} catch (IOException e) {
+			// Unreachable
+			open = false;
+		}
+		finish(probe, open);
+	}
+
+	private void receiveReply(Probe probe) {
+		DatagramChannel channel = (DatagramChannel) probe.channel;
+		boolean open;
+		try {
+			replyBuffer.clear();
+			if (channel.receive(replyBuffer) == null) {
+				return;
+			}
+			// Not a service if the port was (or is) used by another probe, the reply might be its request
+			open = !(probe.host.local && ownUdpPorts.get(probe.port));
+			probe.host.timeout.addRoundTripTime(System.currentTimeMillis() - probe.started);
+		} catch (PortUnreachableException e) {
+			// The ICMP port unreachable of the host
+			open = false;
+			probe.host.timeout.addRoundTripTime(System.currentTimeMillis() - probe.started);
+		} catch (IOException e) {
+			// Unreachable
+			open = false;
+		}
+		finish(probe, open);
+	}
+
+	private void finish(Probe probe, boolean open) {
+		if (probe.finished) {
+			return;
+		}
+		probe.finished = true;
+		budget.release();
+		HostScan host = probe.host;
+		host.inFlight.remove(probe);
+		if (host.aborted) {
+			close(probe.channel);
+			return;
+		}
+		host.listener.portScanned(probe.port, open);
+		if (open && host.udp) {
+			close(probe.channel);
+			String service = UdpPayloads.getService(probe.port);
+			if (service != null) {
+				host.listener.serviceDetected(probe.port, service);
+			}
+		} else if (open && host.detector != null) {
+			SelectionKey key = probe.channel.keyFor(selector);
+			if (key != null) {
+				key.cancel();
+			}
+			host.detector.detect(host.name, probe.port, (SocketChannel) probe.channel, host.listener);
+		} else {
+			close(probe.channel);
+		}
+	}
+
+	/**
+	 * Returns the probe with the earliest deadline which is still pending, discarding the ones already finished.
+	 */
+	private Probe nextPending() {
+		Probe probe;
+		while ((probe = deadlines.peek()) != null && probe.finished) {
+			deadlines.poll();
+		}
+		return probe;
+	}
+
+	private static void close(SelectableChannel channel) {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// Ignore
+		}
+	}
+
+	/**
+	 * The scan of one host.
+	 */
+	class HostScan {
+
+		private final String name;
+		private final InetAddress address;
+		private final PortSource ports;
+		private final boolean udp;
+		private final boolean local;
+		private final ConnectTimeout timeout;
+		private final ServiceDetector detector;
+		private final PortProbeListener listener;
+		private final CountDownLatch completed = new CountDownLatch(1);
+
+		// Only used by the thread of the engine
+		private final Set<Probe> inFlight = new HashSet<>();
+		private int retryPort = -1;
+		private boolean exhausted;
+		private boolean aborted;
+
+		private HostScan(String name, InetAddress address, PortSource ports, boolean udp, ConnectTimeout timeout,
+				ServiceDetector detector, PortProbeListener listener) {
+			this.name = name;
+			this.address = address;
+			this.ports = ports;
+			this.udp = udp;
+			this.local = udp && isLocal(address);
+			this.timeout = timeout;
+			this.detector = detector;
+			this.listener = listener;
+		}
+
+		/**
+		 * Waits until all the ports were probed or the scan was stopped.
+		 */
+		void awaitCompletion() throws InterruptedException {
+			completed.await();
+		}
+
+		private boolean canStart(int maxPerHost) {
+			return !aborted && (!exhausted || retryPort != -1) && inFlight.size() < maxPerHost
+					&& !listener.isPaused() && !listener.isStopped();
+		}
+
+		private boolean isDone() {
+			return inFlight.isEmpty() && (aborted || (exhausted && retryPort == -1));
+		}
+
+		/**
+		 * Starts the connect to the next port (or sends it the UDP request), with a connect already taken from the
+		 * budget. Returns {@code false} if no connect was started.
+		 */
+		private boolean startConnect() {
+			int port = retryPort;
+			retryPort = -1;
+			if (port == -1) {
+				port = ports.nextPort();
+				if (port == -1) {
+					exhausted = true;
+					budget.release();
+					return false;
+				}
+			}
+
+			SelectableChannel channel;
+			try {
+				channel = udp ? DatagramChannel.open() : SocketChannel.open();
+			} catch (IOException e) {
+				budget.release();
+				retryPort = port;
+				if (budget.limitToInUse()) {
+					log.debug("Reduced connects in flight: " + e.getMessage());
+				} else {
+					log.error("Failed to open a socket to scan " + address + ": " + e.getMessage(), e);
+					abort();
+				}
+				return false;
+			}
+
+			Probe probe = new Probe(this, port, channel);
+			inFlight.add(probe);
+			try {
+				channel.configureBlocking(false);
+				boolean connected;
+				if (udp) {
+					DatagramChannel datagramChannel = (DatagramChannel) channel;
+					// Connected, so that the ICMP port unreachable is reported to the channel
+					datagramChannel.connect(new InetSocketAddress(address, port));
+					if (local) {
+						ownUdpPorts.set(((InetSocketAddress) datagramChannel.getLocalAddress()).getPort());
+					}
+					probe.started = System.currentTimeMillis();
+					datagramChannel.write(ByteBuffer.wrap(UdpPayloads.getPayload(port)));
+					connected = false;
+				} else {
+					SocketChannel socketChannel = (SocketChannel) channel;
+					// Reset rather than go through the normal close, to not leave sockets in TIME_WAIT
+					socketChannel.setOption(StandardSocketOptions.SO_LINGER, 0);
+					probe.started = System.currentTimeMillis();
+					connected = socketChannel.connect(new InetSocketAddress(address, port));
+				}
+				if (connected) {
+					finish(probe, true);
+				} else {
+					channel.register(selector, udp ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, probe);
+					// A timeout of 0 means waiting until the OS gives up
+					int timeoutInMs = timeout.getTimeoutInMs();
+					probe.deadline = timeoutInMs == 0 ? Long.MAX_VALUE : probe.started + timeoutInMs;
+					deadlines.add(probe);
+				}
+			} catch (IOException e) {
+				finish(probe, false);
+			}
+			return true;
+		}
+
+		private boolean isLocal(InetAddress address) {
+			try {
+				return address.isLoopbackAddress() || address.isAnyLocalAddress()
+						|| NetworkInterface.getByInetAddress(address) != null;
+			} catch (SocketException e) {
+				return false;
+			}
+		}
+
+		/**
+		 * Abandons the pending connects, without notifying their results.
+		 */
+		private void abort() {
+			aborted = true;
+			for (Probe probe : new ArrayList<>(inFlight)) {
+				finish(probe, false);
+			}
+		}
+	}
+
+	private static class Probe implements Comparable<Probe> {
+
+		private final HostScan host;
+		private final int port;
+		private final SelectableChannel channel;
+		private long started;
+		private long deadline;
+		private boolean finished;
+
+		Probe(HostScan host, int port, SelectableChannel channel) {
+			this.host = host;
+			this.port = port;
+			this.channel = channel;
+		}
+
+		@Override
+		public int compareTo(Probe other) {
+			return Long.compare(deadline, other.deadline);
+		}
+	}
+}
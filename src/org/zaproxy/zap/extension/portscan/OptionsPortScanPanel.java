@@ -43,9 +43,17 @@ public class OptionsPortScanPanel extends AbstractParamPanel {
 	private JSlider sliderMaxPort = null;
 	private JSlider sliderThreadsPerScan = null;
 	private JSlider sliderTimeoutInMs = null;
+	private JSlider sliderMaxInFlight = null;
+	private JSlider sliderMaxInFlightPerHost = null;
 	private JLabel labelMaxPortValue = null;
 	private JLabel labelThreadsPerScanValue = null;
+	private JLabel labelMaxInFlightValue = null;
+	private JLabel labelMaxInFlightPerHostValue = null;
 	private JCheckBox checkUseProxy = null;
+	private JCheckBox checkAdaptiveTimeout = null;
+	private JCheckBox checkDetectServices = null;
+	private JCheckBox checkTopPortsFirst = null;
+	private JCheckBox checkScanUdp = null;
 	
     public OptionsPortScanPanel() {
         super();
@@ -92,12 +100,40 @@ public class OptionsPortScanPanel extends AbstractParamPanel {
 					LayoutHelper.getGBC(0, 4, 2, 1.0D, 0, GridBagConstraints.HORIZONTAL, new Insets(2,2,2,2)));
 			panelPortScan.add(getSliderTimeoutInMs(), 
 					LayoutHelper.getGBC(0, 5, 2, 1.0D, 0, GridBagConstraints.HORIZONTAL, new Insets(2,2,2,2)));
-			panelPortScan.add(new JLabel(Constant.messages.getString("ports.options.label.useProxy")), 
+			panelPortScan.add(new JLabel(Constant.messages.getString("ports.options.label.adaptiveTimeout")), 
 					LayoutHelper.getGBC(0, 6, 1, 1.0D, 0, GridBagConstraints.HORIZONTAL, new Insets(2,2,2,2)));
-			panelPortScan.add(getCheckUseProxy(), 
+			panelPortScan.add(getCheckAdaptiveTimeout(), 
 					LayoutHelper.getGBC(1, 6, 1, 1.0D, 0, GridBagConstraints.HORIZONTAL, new Insets(2,2,2,2)));
+			panelPortScan.add(new JLabel(Constant.messages.getString("ports.options.label.useProxy")), 
+					LayoutHelper.getGBC(0, 7, 1, 1.0D, 0, GridBagConstraints.HORIZONTAL, new Insets(2,2,2,2)));
+			panelPortScan.add(getCheckUseProxy(), 
+					LayoutHelper.getGBC(1, 7, 1, 1.0D, 0, GridBagConstraints.HORIZONTAL, new Insets(2,2,2,2)));
+			panelPortScan.add(new JLabel(Constant.messages.getString("ports.options.label.maxInFlight")), 
+					LayoutHelper.getGBC(0, 8, 1, 1.0D, 0, GridBagConstraints.HORIZONTAL, new Insets(2,2,2,2)));
+			panelPortScan.add(getLabelMaxInFlightValue(), 
+					LayoutHelper.getGBC(1, 8, 1, 1.0D, 0, GridBagConstraints.HORIZONTAL, new Insets(2,2,2,2)));
+			panelPortScan.add(getSliderMaxInFlight(), 
+					LayoutHelper.getGBC(0, 9, 2, 1.0D, 0, GridBagConstraints.HORIZONTAL, new Insets(2,2,2,2)));
+			panelPortScan.add(new JLabel(Constant.messages.getString("ports.options.label.maxInFlightPerHost")), 
+					LayoutHelper.getGBC(0, 10, 1, 1.0D, 0, GridBagConstraints.HORIZONTAL, new Insets(2,2,2,2)));
+			panelPortScan.add(getLabelMaxInFlightPerHostValue(), 
+					LayoutHelper.getGBC(1, 10, 1, 1.0D, 0, GridBagConstraints.HORIZONTAL, new Insets(2,2,2,2)));
+			panelPortScan.add(getSliderMaxInFlightPerHost(), 
+					LayoutHelper.getGBC(0, 11, 2, 1.0D, 0, GridBagConstraints.HORIZONTAL, new Insets(2,2,2,2)));
+			panelPortScan.add(new JLabel(Constant.messages.getString("ports.options.label.detectServices")), 
+					LayoutHelper.getGBC(0, 12, 1, 1.0D, 0, GridBagConstraints.HORIZONTAL, new Insets(2,2,2,2)));
+			panelPortScan.add(getCheckDetectServices(), 
+					LayoutHelper.getGBC(1, 12, 1, 1.0D, 0, GridBagConstraints.HORIZONTAL, new Insets(2,2,2,2)));
+			panelPortScan.add(new JLabel(Constant.messages.getString("ports.options.label.topPortsFirst")), 
+					LayoutHelper.getGBC(0, 13, 1, 1.0D, 0, GridBagConstraints.HORIZONTAL, new Insets(2,2,2,2)));
+			panelPortScan.add(getCheckTopPortsFirst(), 
+					LayoutHelper.getGBC(1, 13, 1, 1.0D, 0, GridBagConstraints.HORIZONTAL, new Insets(2,2,2,2)));
+			panelPortScan.add(new JLabel(Constant.messages.getString("ports.options.label.scanUdp")), 
+					LayoutHelper.getGBC(0, 14, 1, 1.0D, 0, GridBagConstraints.HORIZONTAL, new Insets(2,2,2,2)));
+			panelPortScan.add(getCheckScanUdp(), 
+					LayoutHelper.getGBC(1, 14, 1, 1.0D, 0, GridBagConstraints.HORIZONTAL, new Insets(2,2,2,2)));
 			panelPortScan.add(new JLabel(""), 
-					LayoutHelper.getGBC(0, 10, 2, 1.0D, 1.0D, GridBagConstraints.BOTH, new Insets(2,2,2,2)));
+					LayoutHelper.getGBC(0, 15, 2, 1.0D, 1.0D, GridBagConstraints.BOTH, new Insets(2,2,2,2)));
 		}
 		return panelPortScan;
 	}
@@ -111,11 +147,23 @@ public class OptionsPortScanPanel extends AbstractParamPanel {
 		    getSliderThreadsPerScan().setValue(PortScanParam.DEFAULT_THREAD_PER_SCAN);
 		    getSliderTimeoutInMs().setValue(PortScanParam.DEFAULT_TIMEOUT_IN_MS);
 		    getCheckUseProxy().setSelected(PortScanParam.DEFAULT_USE_PROXY);
+		    getSliderMaxInFlight().setValue(PortScanParam.DEFAULT_MAX_IN_FLIGHT);
+		    getSliderMaxInFlightPerHost().setValue(PortScanParam.DEFAULT_MAX_IN_FLIGHT_PER_HOST);
+		    getCheckAdaptiveTimeout().setSelected(PortScanParam.DEFAULT_ADAPTIVE_TIMEOUT);
+		    getCheckDetectServices().setSelected(PortScanParam.DEFAULT_DETECT_SERVICES);
+		    getCheckTopPortsFirst().setSelected(PortScanParam.DEFAULT_TOP_PORTS_FIRST);
+		    getCheckScanUdp().setSelected(PortScanParam.DEFAULT_SCAN_UDP);
 	    } else {
 		    getSliderMaxPort().setValue(param.getMaxPort());
 		    getSliderThreadsPerScan().setValue(param.getThreadPerScan());
 		    getSliderTimeoutInMs().setValue(param.getTimeoutInMs());
 		    getCheckUseProxy().setSelected(param.isUseProxy());
+		    getSliderMaxInFlight().setValue(param.getMaxInFlight());
+		    getSliderMaxInFlightPerHost().setValue(param.getMaxInFlightPerHost());
+		    getCheckAdaptiveTimeout().setSelected(param.isAdaptiveTimeout());
+		    getCheckDetectServices().setSelected(param.isDetectServices());
+		    getCheckTopPortsFirst().setSelected(param.isTopPortsFirst());
+		    getCheckScanUdp().setSelected(param.isScanUdp());
 	    }
 	}
 	
@@ -136,6 +184,12 @@ public class OptionsPortScanPanel extends AbstractParamPanel {
 	   	param.setThreadPerScan(getSliderThreadsPerScan().getValue());
 	   	param.setTimeoutInMs(getSliderTimeoutInMs().getValue());
 	   	param.setUseProxy(getCheckUseProxy().isSelected());
+	   	param.setMaxInFlight(getSliderMaxInFlight().getValue());
+	   	param.setMaxInFlightPerHost(getSliderMaxInFlightPerHost().getValue());
+	   	param.setAdaptiveTimeout(getCheckAdaptiveTimeout().isSelected());
+	   	param.setDetectServices(getCheckDetectServices().isSelected());
+	   	param.setTopPortsFirst(getCheckTopPortsFirst().isSelected());
+	   	param.setScanUdp(getCheckScanUdp().isSelected());
 	}
 	
 	/**
@@ -226,6 +280,39 @@ public class OptionsPortScanPanel extends AbstractParamPanel {
 		return sliderTimeoutInMs;
 	}
 
+	private JSlider getSliderMaxInFlight() {
+		if (sliderMaxInFlight == null) {
+			sliderMaxInFlight = new JSlider();
+			sliderMaxInFlight.setMaximum(4096);
+			sliderMaxInFlight.setMinimum(0);
+			sliderMaxInFlight.setValue(PortScanParam.DEFAULT_MAX_IN_FLIGHT);
+			sliderMaxInFlight.setPaintTicks(true);
+			sliderMaxInFlight.setPaintLabels(true);
+			sliderMaxInFlight.setMinorTickSpacing(128);
+			sliderMaxInFlight.setMajorTickSpacing(1024);
+			sliderMaxInFlight.setSnapToTicks(true);
+			sliderMaxInFlight.setPaintTrack(true);
+			sliderMaxInFlight.addChangeListener(new ChangeListener () {
+				@Override
+				public void stateChanged(ChangeEvent e) {
+					// Same as the threads, at least one connect has to be allowed
+					if (getSliderMaxInFlight().getValue() == 0) {
+						getSliderMaxInFlight().setValue(getSliderMaxInFlight().getMinorTickSpacing());
+					}
+					getLabelMaxInFlightValue().setText("" + getSliderMaxInFlight().getValue());
+				}});
+		}
+		return sliderMaxInFlight;
+	}
+
+	private JLabel getLabelMaxInFlightValue() {
+		if (labelMaxInFlightValue == null) {
+			labelMaxInFlightValue = new JLabel();
+			labelMaxInFlightValue.setText("" + getSliderMaxInFlight().getValue());
+		}
+		return labelMaxInFlightValue;
+	}
+
     public int getThreadPerScan() {
     	return this.sliderThreadsPerScan.getValue();
     }
@@ -241,6 +328,66 @@ public class OptionsPortScanPanel extends AbstractParamPanel {
 		return checkUseProxy;
 	}
 
+	private JSlider getSliderMaxInFlightPerHost() {
+		if (sliderMaxInFlightPerHost == null) {
+			sliderMaxInFlightPerHost = new JSlider();
+			sliderMaxInFlightPerHost.setMaximum(4096);
+			sliderMaxInFlightPerHost.setMinimum(0);
+			sliderMaxInFlightPerHost.setValue(PortScanParam.DEFAULT_MAX_IN_FLIGHT_PER_HOST);
+			sliderMaxInFlightPerHost.setPaintTicks(true);
+			sliderMaxInFlightPerHost.setPaintLabels(true);
+			sliderMaxInFlightPerHost.setMinorTickSpacing(128);
+			sliderMaxInFlightPerHost.setMajorTickSpacing(1024);
+			sliderMaxInFlightPerHost.setSnapToTicks(true);
+			sliderMaxInFlightPerHost.setPaintTrack(true);
+			sliderMaxInFlightPerHost.addChangeListener(new ChangeListener () {
+				@Override
+				public void stateChanged(ChangeEvent e) {
+					if (getSliderMaxInFlightPerHost().getValue() == 0) {
+						getSliderMaxInFlightPerHost().setValue(getSliderMaxInFlightPerHost().getMinorTickSpacing());
+					}
+					getLabelMaxInFlightPerHostValue().setText("" + getSliderMaxInFlightPerHost().getValue());
+				}});
+		}
+		return sliderMaxInFlightPerHost;
+	}
+
+	private JLabel getLabelMaxInFlightPerHostValue() {
+		if (labelMaxInFlightPerHostValue == null) {
+			labelMaxInFlightPerHostValue = new JLabel();
+			labelMaxInFlightPerHostValue.setText("" + getSliderMaxInFlightPerHost().getValue());
+		}
+		return labelMaxInFlightPerHostValue;
+	}
+
+	private JCheckBox getCheckAdaptiveTimeout() {
+		if (checkAdaptiveTimeout == null) {
+			checkAdaptiveTimeout = new JCheckBox();
+		}
+		return checkAdaptiveTimeout;
+	}
+
+	private JCheckBox getCheckDetectServices() {
+		if (checkDetectServices == null) {
+			checkDetectServices = new JCheckBox();
+		}
+		return checkDetectServices;
+	}
+
+	private JCheckBox getCheckTopPortsFirst() {
+		if (checkTopPortsFirst == null) {
+			checkTopPortsFirst = new JCheckBox();
+		}
+		return checkTopPortsFirst;
+	}
+
+	private JCheckBox getCheckScanUdp() {
+		if (checkScanUdp == null) {
+			checkScanUdp = new JCheckBox();
+		}
+		return checkScanUdp;
+	}
+
 	@Override
 	public String getHelpIndex() {
 		return "addon.portscan.options";
@@ -71,8 +71,14 @@ public class PopupMenuPortCopy extends ExtensionPopupMenuItem implements Clipboa
                 List<Integer> values = extension.getPortScanPanel().getPortList().getSelectedValuesList();
                 
                 StringBuilder sb = new StringBuilder();
-                for (Integer port : values) {
-                	sb.append(port);
+                for (Integer entry : values) {
+                	int port = entry;
+                	if (entry >= PortScan.UDP_LIST_OFFSET) {
+                		port = entry - PortScan.UDP_LIST_OFFSET;
+                		sb.append(Constant.messages.getString("ports.port.udp", port));
+                	} else {
+                		sb.append(port);
+                	}
                 	sb.append('\t');
             		if (Constant.messages.containsKey("port." + port)) {
             			sb.append(Constant.messages.getString("port." + port));
@@ -0,0 +1,49 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.portscan;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link PortSource} which returns the ports of an array, in the order they are in the array.
+ */
+class PortList implements PortSource {
+
+	private final int[] ports;
+	private final AtomicInteger next = new AtomicInteger();
+
+	PortList(int[] ports) {
+		this.ports = ports;
+	}
+
+	@Override
+	public int nextPort() {
+		int index = next.getAndIncrement();
+		if (index >= ports.length) {
+			// Don't let the counter keep growing (and eventually overflow)
+			next.set(ports.length);
+			return -1;
+		}
+		return ports[index];
+	}
+
+	@Override
+	public int size() {
+		return ports.length;
+	}
+}
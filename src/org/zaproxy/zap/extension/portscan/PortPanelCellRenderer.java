@@ -23,6 +23,8 @@ import java.awt.Color;
 import java.awt.Component;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
+import java.util.Collections;
+import java.util.Map;
 
 import javax.swing.JLabel;
 import javax.swing.JList;
@@ -37,6 +39,8 @@ public class PortPanelCellRenderer extends JPanel implements ListCellRenderer<In
 	
 	private JLabel txtPort = null;
     private JLabel txtDescription = null;
+    private Map<Integer, String> services = Collections.emptyMap();
+    private Map<Integer, String> udpServices = Collections.emptyMap();
 
     /**
      * This is the default constructor
@@ -96,15 +100,31 @@ public class PortPanelCellRenderer extends JPanel implements ListCellRenderer<In
         this.add(txtDescription, gridBagConstraints2);
     }
 
+    /**
+     * Sets the services detected on the ports, shown along with the descriptions.
+     */
+    void setServices(Map<Integer, String> services, Map<Integer, String> udpServices) {
+        this.services = services;
+        this.udpServices = udpServices;
+    }
+
     @Override
-    public Component getListCellRendererComponent(JList<? extends Integer> list, Integer port, int index, boolean isSelected, boolean cellHasFocus) {
+    public Component getListCellRendererComponent(JList<? extends Integer> list, Integer entry, int index, boolean isSelected, boolean cellHasFocus) {
         
+        boolean udp = entry >= PortScan.UDP_LIST_OFFSET;
+        int port = udp ? entry - PortScan.UDP_LIST_OFFSET : entry;
+
 		String portDesc = Constant.messages.getString("ports.port.unknown");
 		if (Constant.messages.containsKey("ports.port." + port)) {
 			portDesc = Constant.messages.getString("ports.port." + port);
 		}
 
-        txtPort.setText(""+port);
+        String service = udp ? udpServices.get(port) : services.get(port);
+        if (service != null) {
+            portDesc = Constant.messages.getString("ports.port.service", portDesc, service);
+        }
+
+        txtPort.setText(udp ? Constant.messages.getString("ports.port.udp", port) : ""+port);
         txtDescription.setText(portDesc);
         
         if (isSelected) {
@@ -0,0 +1,39 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.portscan;
+
+/**
+ * Receives the results of the port probes and tells the scan engines whether they should pause or stop.
+ */
+interface PortProbeListener {
+
+	boolean isStopped();
+
+	boolean isPaused();
+
+	/**
+	 * Called once for each port probed, by the thread of the scan engine.
+	 */
+	void portScanned(int port, boolean open);
+
+	/**
+	 * Called with the service guessed for an open port, or {@code null} if none, if the detection of the services is
+	 * enabled. Called by the threads of the {@link ServiceDetector}, after the port was notified as open.
+	 */
+	void serviceDetected(int port, String service);
+}
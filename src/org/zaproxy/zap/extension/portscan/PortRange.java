@@ -0,0 +1,56 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.portscan;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link PortSource} which returns the ports of a range in ascending order.
+ */
+class PortRange implements PortSource {
+
+	private final int first;
+	private final int last;
+	private final AtomicInteger next;
+
+	/**
+	 * @param first the first port of the range
+	 * @param last the last port of the range, inclusive
+	 */
+	PortRange(int first, int last) {
+		this.first = first;
+		this.last = last;
+		this.next = new AtomicInteger(first);
+	}
+
+	@Override
+	public int nextPort() {
+		int port = next.getAndIncrement();
+		if (port > last) {
+			// Don't let the counter keep growing (and eventually overflow)
+			next.set(last + 1);
+			return -1;
+		}
+		return port;
+	}
+
+	@Override
+	public int size() {
+		return Math.max(0, last - first + 1);
+	}
+}
@@ -20,17 +20,24 @@
 package org.zaproxy.zap.extension.portscan;
 
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.Socket;
 import java.net.SocketAddress;
-import java.util.ArrayList;
+import java.awt.EventQueue;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Date;
-import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.FutureTask;
-import java.util.concurrent.TimeUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.DefaultListModel;
+import javax.swing.Timer;
 
 import org.apache.log4j.Logger;
 import org.parosproxy.paros.model.Model;
@@ -40,189 +47,407 @@ import org.zaproxy.zap.model.ScanListenner;
 import org.zaproxy.zap.model.ScanThread;
 import org.zaproxy.zap.utils.SortedListModel;
 
-public class PortScan extends ScanThread implements ScanListenner {
+public class PortScan extends ScanThread implements PortProbeListener {
+
+	/**
+	 * How often the open ports found are added to the list shown, at most.
+	 */
+	private static final int PUBLISH_INTERVAL_MS = 250;
+
+	/**
+	 * How often the progress is reported, regardless of how fast the ports are scanned.
+	 */
+	private static final int PROGRESS_INTERVAL_MS = 500;
+
+	/**
+	 * How often the progress is saved, so that the scan can be resumed.
+	 */
+	private static final int CHECKPOINT_INTERVAL_MS = 30000;
+
+	/**
+	 * The minimum time to wait for the replies of the UDP ports. The services only answer once the request is
+	 * processed, and nothing tells a request they ignored apart from one not answered yet.
+	 */
+	private static final int MIN_UDP_TIMEOUT_MS = 1000;
+
+	/**
+	 * What is added to the UDP ports in the list of open ports, which only holds numbers, so that they are listed
+	 * after the TCP ports.
+	 */
+	static final int UDP_LIST_OFFSET = 0x10000;
 
 	private String site;
 	private SortedListModel<Integer> list = new SortedListModel<>();
-	private boolean stopScan = false;
-	private boolean pauseScan = false;
-	private boolean unpauseScan = false;
-	private boolean isPaused = false;
+	private volatile PortSet openPorts = new PortSet();
+	private PortSet scannedPorts = new PortSet();
+	// The ports already added to the list, only used on the EDT
+	private BitSet listedPorts = new BitSet();
+	private final AtomicBoolean publishScheduled = new AtomicBoolean();
+	private final Map<Integer, String> services = new ConcurrentHashMap<>();
+	private volatile PortSet openUdpPorts = new PortSet();
+	private PortSet scannedUdpPorts = new PortSet();
+	private final Map<Integer, String> udpServices = new ConcurrentHashMap<>();
+	private final PortProbeListener udpListener = new UdpProbeListener();
+	// The ports whose service was detected since the last publication
+	private final ConcurrentLinkedQueue<Integer> detectedPorts = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pendingDetections = new AtomicInteger();
+	private final Timer publishTimer;
+	private final Timer progressTimer;
+	private volatile boolean stopScan = false;
+	private volatile boolean isPaused = false;
 	private ScanListenner listenner;
 	private int maxPort = 0;
+	private volatile int maximum = 0;
 	private int threads = 0;
-	private int threadIndex = -1;
-	private int port = 0;
-	private int progress = 0;
+	private volatile int progress = 0;
+	private long lastProgressTime;
+	private volatile double portsPerSecond;
+	private long lastCheckpointTime;
+	private int lastCheckpointProgress;
+	private boolean resume;
 	private int timeout = 0;
 	private boolean useProxy = true;
-	private List<PortScan> subThreads = new ArrayList<>();
+	private boolean adaptiveTimeout = true;
+	private boolean topPortsFirst = true;
+	private boolean scanUdp = false;
+	// Whether the UDP ports are probed in the current run, not when proxied
+	private boolean probeUdp;
+	private ConnectionBudget budget;
+	private NioConnectScanner connectScanner;
+	private ServiceDetector serviceDetector;
+	private AtomicInteger portsScanned = new AtomicInteger();
 	
     private static Logger log = Logger.getLogger(PortScan.class);
 
 	public PortScan (String site, ScanListenner listenner, PortScanParam portScanParam) {
+		this(site, listenner, portScanParam, new ConnectionBudget(portScanParam), null, null);
+	}
+
+	/**
+	 * Creates a scan which shares the given budget, engine and service detector with other scans, the engine and
+	 * the detector are created if {@code null}. The detector is only used if enabled in the options.
+	 */
+	PortScan (String site, ScanListenner listenner, PortScanParam portScanParam, ConnectionBudget budget,
+			NioConnectScanner connectScanner, ServiceDetector serviceDetector) {
 		super(site, listenner);
 		this.site = site;
 		this.listenner = listenner;
 		this.maxPort = portScanParam.getMaxPort();
+		this.maximum = maxPort;
 		this.threads = portScanParam.getThreadPerScan();
 		this.timeout = portScanParam.getTimeoutInMs();
 		this.useProxy = portScanParam.isUseProxy();
+		this.adaptiveTimeout = portScanParam.isAdaptiveTimeout();
+		this.topPortsFirst = portScanParam.isTopPortsFirst();
+		this.scanUdp = portScanParam.isScanUdp();
+		this.budget = budget;
+		this.connectScanner = connectScanner != null ? connectScanner : new NioConnectScanner(budget, portScanParam);
+		if (portScanParam.isDetectServices()) {
+			this.serviceDetector = serviceDetector != null ? serviceDetector : new ServiceDetector();
+		}
 
-		log.debug("PortScan : " + site + " threads: " + threads);
-	}
-	
-	private PortScan (String site, ScanListenner listenner, SortedListModel<Integer> list, int maxPort, int threads, int threadIndex) {
-		super(site, listenner);
-		this.site = site;
-		this.listenner = listenner;
-		this.maxPort = maxPort;
-		this.threads = threads;
-		this.threadIndex = threadIndex;
+		this.publishTimer = new Timer(PUBLISH_INTERVAL_MS, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				publishOpenPorts();
+			}
+		});
+		this.publishTimer.setRepeats(false);
 
-		this.list = list;
-		log.debug("PortScan : " + site + " threads: " + threads + " threadIndex: " + threadIndex);
+		this.progressTimer = new Timer(PROGRESS_INTERVAL_MS, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				publishProgress();
+			}
+		});
+
+		log.debug("PortScan : " + site + " threads: " + threads);
 	}
 	
 	@Override
 	public void run() {
-		if (threads > 1 && threadIndex == -1) {
-			// Start the sub threads
-			runSubThreads();
-		} else {
-			// This is a sub thread
-			runScan();
-		}
-		if (this.listenner != null) {
-			this.listenner.scanFinshed(site);
-		}
-		stopScan = true;
-	}
-	
-	private void runScan() {
-		// Do the scan
-		// If there are multiple sub threads then they will start at a different point
 		Date start = new Date();
 		log.debug("Starting scan on " + site + " at " + start);
-		list.clear();
-
 		stopScan = false;
-		int startPort = threadIndex;
-		if (startPort < 1) {
-			startPort = 1;
+		lastProgressTime = start.getTime();
+		lastCheckpointTime = start.getTime();
+
+		boolean proxied = isProxied();
+		probeUdp = scanUdp && ! proxied;
+		if (scanUdp && proxied) {
+			log.info("Not probing the UDP ports of " + site + ", the scan is done through a proxy.");
 		}
+		maximum = probeUdp ? 2 * maxPort : maxPort;
 
-		ConnectionParam connParams = Model.getSingleton().getOptionsParam().getConnectionParam();
-		SocketAddress sa = new InetSocketAddress(connParams.getProxyChainName(), connParams.getProxyChainPort());
-		final java.net.Proxy proxy = new java.net.Proxy(java.net.Proxy.Type.SOCKS, sa);
-
-		for (port = startPort; port < maxPort; port += threads) {
-			try {
-				if (pauseScan) {
-					pauseScan = false;
-					isPaused = true;
-					for (PortScan ps : subThreads) {
-						ps.pauseScan();
-					}
-					while (! stopScan && ! unpauseScan) {
-						try {
-							sleep (500);
-						} catch (InterruptedException e) {
-							// Ignore
-						}
-					}
-					isPaused = false;
-					for (PortScan ps : subThreads) {
-						ps.resumeScan();
-					}
-				}
-				if (stopScan) {
-					log.debug("Scanned stopped");
-					break;
-				}
-				if (this.listenner != null) {
-					this.listenner.scanProgress(site, port, maxPort);
-				}
+		PortSource ports = createPortSource(TopPorts.getRankedPorts());
+		// The ports with a request of a specific service are the most likely to answer
+		PortSource udpPorts = createPortSource(UdpPayloads.getPorts());
+		if (resume && resumeFromCheckpoint()) {
+			ports = new SkippingPortSource(ports, scannedPorts);
+			udpPorts = new SkippingPortSource(udpPorts, scannedUdpPorts);
+		}
+		progressTimer.start();
 
-				Socket s = null;
-				if (useProxy && Model.getSingleton().getOptionsParam().getConnectionParam().isUseProxy(site)) {
-					
-					FutureTask<Integer> ft = new FutureTask<>(new Callable<Integer>() {
-						@Override
-						public Integer call() {
-							Socket s = new Socket(proxy);
-							SocketAddress endpoint = new InetSocketAddress(site, port);
-							try {
-								s.connect(endpoint, timeout);
-								s.close();
-							} catch (IOException e) {
-								return null;
-							}
-							return port;
-							
-						}});
-					new Thread(ft).start();
-					try {
-						ft.get(2, TimeUnit.SECONDS);
-					} catch (Exception e) {
-						ft.cancel(true);
-						throw new IOException();
-					}
-					
-				} else {
-					// Not using a proxy
-					s = new Socket();
-					s.connect(new InetSocketAddress(site, port), timeout);
-					s.close();
+		ConnectTimeout connectTimeout = new ConnectTimeout(timeout, adaptiveTimeout);
+		boolean completed = false;
+		try {
+			if (proxied) {
+				// Proxied connects can't be done without blocking, use a bounded number of threads
+				ConnectionParam connParams = Model.getSingleton().getOptionsParam().getConnectionParam();
+				SocketAddress sa = new InetSocketAddress(connParams.getProxyChainName(), connParams.getProxyChainPort());
+				java.net.Proxy proxy = new java.net.Proxy(java.net.Proxy.Type.SOCKS, sa);
+				new ProxiedConnectScanner(budget, proxy, site, threads, connectTimeout, serviceDetector).scan(ports, this);
+			} else {
+				InetAddress address = InetAddress.getByName(site);
+				NioConnectScanner.HostScan tcpScan =
+						connectScanner.submit(site, address, ports, connectTimeout, serviceDetector, this);
+				NioConnectScanner.HostScan udpScan = null;
+				if (probeUdp) {
+					// Not adaptive, how soon the host reports closed ports says nothing about how long its services
+					// take to answer
+					ConnectTimeout udpTimeout = new ConnectTimeout(Math.max(timeout, MIN_UDP_TIMEOUT_MS), false);
+					udpScan = connectScanner.submitUdp(site, address, udpPorts, udpTimeout, udpListener);
 				}
-				log.debug("Site : " + site + " open port: " + port);
-				synchronized (list) {
-					list.addElement(port);
+				tcpScan.awaitCompletion();
+				if (udpScan != null) {
+					udpScan.awaitCompletion();
 				}
-			} catch (IOException ex) {
-				// The host is not listening on this port
 			}
+			awaitServiceDetections();
+			completed = ! stopScan;
+		} catch (IOException e) {
+			log.error("Failed to scan " + site + ": " + e.getMessage(), e);
+		} catch (InterruptedException e) {
+			stopScan = true;
+		}
+
+		progressTimer.stop();
+		publishProgress();
+		if (completed) {
+			PortScanCheckpoint.deleteLater(site);
+		} else if (portsScanned.get() > 0) {
+			createCheckpoint().saveLater();
 		}
+
 		Date stop = new Date();
+		long took = Math.max(1, stop.getTime() - start.getTime());
 		log.debug("Finished scan on " + site + " at " + stop);
-		log.debug("Took " + ((stop.getTime() - start.getTime())/60000) + " mins " );
+		log.debug("Took " + (took/1000) + " secs, " + (portsScanned.get() * 1000L / took) + " ports/sec");
+
+		// Show the ports found since the last publication
+		publishTimer.stop();
+		EventQueue.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				publishOpenPorts();
+			}
+		});
+
+		if (this.listenner != null) {
+			this.listenner.scanFinshed(site);
+		}
+		stopScan = true;
 	}
 
-	private void runSubThreads() {
-		for (int i=0; i < threads; i++) {
-			PortScan ps = new PortScan(site, this, list, maxPort, threads, i+1);
-			subThreads.add(ps);
-			ps.start();
+	/**
+	 * Returns the source of the ports to scan, either the given ports first or all in numeric order, depending on
+	 * the options.
+	 */
+	private PortSource createPortSource(int[] rankedPorts) {
+		if (topPortsFirst) {
+			// Scan the ports most likely to be open first, so that they are shown early
+			return TopPorts.createPortSource(rankedPorts, maxPort - 1);
 		}
-		boolean running = true;
-		while (running) {
-			running = false;
-			for (PortScan st : subThreads) {
-				if (stopScan) {
-					st.stopScan();
-				}
-				if (pauseScan) {
-					unpauseScan = false;
-					st.pauseScan();
-				}
-				if (unpauseScan) {
-					pauseScan = false;
-					st.resumeScan();
-				}
-				if (st.isAlive()) {
-					running = true;
-				}
+		return new PortRange(1, maxPort - 1);
+	}
+
+	/**
+	 * Restores the results of the checkpoint of the site, if any. Returns {@code true} if restored, in which case
+	 * the ports already scanned should be skipped.
+	 */
+	private boolean resumeFromCheckpoint() {
+		PortScanCheckpoint checkpoint;
+		try {
+			checkpoint = PortScanCheckpoint.load(site);
+		} catch (IOException e) {
+			log.warn("Failed to load the port scan checkpoint of " + site + ", scanning all ports: " + e.getMessage(), e);
+			return false;
+		}
+		if (checkpoint == null) {
+			return false;
+		}
+		if (checkpoint.getMaxPort() != maxPort || checkpoint.isUdp() != probeUdp) {
+			log.warn("Not resuming the port scan of " + site + ", the checkpoint was saved with different options"
+					+ " (max port " + checkpoint.getMaxPort() + ", UDP " + checkpoint.isUdp() + "), scanning all ports.");
+			return false;
+		}
+		scannedPorts = checkpoint.getScannedPorts();
+		openPorts = checkpoint.getOpenPorts();
+		services.putAll(checkpoint.getServices());
+		scannedUdpPorts = checkpoint.getScannedUdpPorts();
+		openUdpPorts = checkpoint.getOpenUdpPorts();
+		udpServices.putAll(checkpoint.getUdpServices());
+		portsScanned.set(scannedPorts.size() + scannedUdpPorts.size());
+		progress = portsScanned.get();
+		lastCheckpointProgress = progress;
+		log.debug("Resuming scan on " + site + " with " + progress + " ports already scanned");
+
+		if (this.listenner != null) {
+			this.listenner.scanProgress(site, progress, maximum);
+		}
+		schedulePublish();
+		return true;
+	}
+
+	private PortScanCheckpoint createCheckpoint() {
+		return new PortScanCheckpoint(site, maxPort, probeUdp, new PortSet(scannedPorts.toWords()),
+				new PortSet(openPorts.toWords()), new HashMap<>(services), new PortSet(scannedUdpPorts.toWords()),
+				new PortSet(openUdpPorts.toWords()), new HashMap<>(udpServices));
+	}
+
+	/**
+	 * Makes the scan continue from the checkpoint of the site, if any, rather than from the first port. Must be
+	 * called before the scan is started.
+	 */
+	void setResume(boolean resume) {
+		this.resume = resume;
+	}
+
+	private boolean isProxied() {
+		return useProxy && Model.getSingleton().getOptionsParam().getConnectionParam().isUseProxy(site);
+	}
+
+	@Override
+	public void portScanned(int port, boolean open) {
+		if (open && serviceDetector != null) {
+			pendingDetections.incrementAndGet();
+		}
+		if (open && openPorts.add(port)) {
+			log.debug("Site : " + site + " open port: " + port);
+			schedulePublish();
+		}
+		scannedPorts.add(port);
+		portsScanned.incrementAndGet();
+	}
+
+	@Override
+	public void serviceDetected(int port, String service) {
+		if (service != null) {
+			log.debug("Site : " + site + " port: " + port + " service: " + service);
+			services.put(port, service);
+			detectedPorts.add(port);
+			schedulePublish();
+		}
+		synchronized (pendingDetections) {
+			pendingDetections.decrementAndGet();
+			pendingDetections.notifyAll();
+		}
+	}
+
+	private void awaitServiceDetections() throws InterruptedException {
+		synchronized (pendingDetections) {
+			while (pendingDetections.get() > 0 && ! stopScan) {
+				pendingDetections.wait(500);
 			}
-			if (running) {
-				try {
-					sleep (500);
-				} catch (InterruptedException e) {
-					// Ignore
-				}
+		}
+	}
+
+	private void schedulePublish() {
+		if (publishScheduled.compareAndSet(false, true)) {
+			publishTimer.start();
+		}
+	}
+
+	/**
+	 * Adds the open ports not yet listed to the list. Must be called on the EDT.
+	 */
+	private void publishOpenPorts() {
+		publishScheduled.set(false);
+		for (int port : openPorts.toArray()) {
+			if (! listedPorts.get(port)) {
+				listedPorts.set(port);
+				list.addElement(port);
+			}
+		}
+		for (int port : openUdpPorts.toArray()) {
+			int entry = UDP_LIST_OFFSET + port;
+			if (! listedPorts.get(entry)) {
+				listedPorts.set(entry);
+				list.addElement(entry);
+			}
+		}
+		Integer port;
+		while ((port = detectedPorts.poll()) != null) {
+			// Let the list know the service is now available
+			int index = list.indexOf(port);
+			if (index >= 0) {
+				list.set(index, port);
 			}
 		}
 	}
 
+	/**
+	 * Returns the services detected on the open ports, by port.
+	 */
+	Map<Integer, String> getServices() {
+		return Collections.unmodifiableMap(services);
+	}
+
+	/**
+	 * Returns the services detected on the open UDP ports, by port.
+	 */
+	Map<Integer, String> getUdpServices() {
+		return Collections.unmodifiableMap(udpServices);
+	}
+
+	/**
+	 * Returns the open ports found so far, in ascending order. Unlike the list, includes the ports not yet shown.
+	 */
+	int[] getOpenPorts() {
+		return openPorts.toArray();
+	}
+
+	/**
+	 * Returns the UDP ports which answered so far, in ascending order.
+	 */
+	int[] getOpenUdpPorts() {
+		return openUdpPorts.toArray();
+	}
+
+	/**
+	 * Reports the number of ports scanned since the last time, if changed, and updates the scan rate.
+	 */
+	private synchronized void publishProgress() {
+		int scanned = portsScanned.get();
+		long now = System.currentTimeMillis();
+		long elapsed = now - lastProgressTime;
+		if (elapsed > 0) {
+			double rate = (scanned - progress) * 1000.0 / elapsed;
+			// Smooth the rate, the ports don't complete at a steady pace
+			portsPerSecond = portsPerSecond == 0 ? rate : 0.7 * portsPerSecond + 0.3 * rate;
+			lastProgressTime = now;
+		}
+		if (scanned > progress) {
+			progress = scanned;
+			if (this.listenner != null) {
+				this.listenner.scanProgress(site, progress, maximum);
+			}
+		}
+		if (now - lastCheckpointTime >= CHECKPOINT_INTERVAL_MS && progress > lastCheckpointProgress
+				&& ! stopScan) {
+			lastCheckpointTime = now;
+			lastCheckpointProgress = progress;
+			createCheckpoint().saveLater();
+		}
+	}
+
+	/**
+	 * Returns the number of ports scanned per second, recently.
+	 */
+	public double getPortsPerSecond() {
+		return portsPerSecond;
+	}
+
 	@Override
 	public void stopScan() {
 		stopScan = true;
@@ -257,30 +482,13 @@ public class PortScan extends ScanThread implements ScanListenner {
 		return list;
 	}
 
-	@Override
-	public void scanFinshed(String host) {
-		// Ignore
-	}
-
-	@Override
-	public void scanProgress(String host, int progress, int maximum) {
-		if (progress > this.progress) {
-			this.progress = progress;
-			this.listenner.scanProgress(site, progress, maximum);
-		}
-	}
-
 	@Override
 	public void pauseScan() {
-		this.pauseScan = true;
-		this.unpauseScan = false;
 		this.isPaused = true;
 	}
 
 	@Override
 	public void resumeScan() {
-		this.unpauseScan = true;
-		this.pauseScan = false;
 		this.isPaused = false;
 	}
 	
@@ -291,12 +499,19 @@ public class PortScan extends ScanThread implements ScanListenner {
 
 	@Override
 	public int getMaximum() {
-		return maxPort;
+		return maximum;
 	}
 
 	@Override
 	public void reset() {
 		this.list = new SortedListModel<>();
+		this.openPorts = new PortSet();
+		this.scannedPorts = new PortSet();
+		this.listedPorts = new BitSet();
+		this.services.clear();
+		this.openUdpPorts = new PortSet();
+		this.scannedUdpPorts = new PortSet();
+		this.udpServices.clear();
 	}
 
 	@Override
@@ -320,4 +535,40 @@ public class PortScan extends ScanThread implements ScanListenner {
 		// Don't support			
 	}
 
+	/**
+	 * Records the results of the UDP ports, the rest of the state (e.g. paused, stopped, progress) is shared with the
+	 * TCP ports.
+	 */
+	private class UdpProbeListener implements PortProbeListener {
+
+		@Override
+		public boolean isStopped() {
+			return PortScan.this.isStopped();
+		}
+
+		@Override
+		public boolean isPaused() {
+			return PortScan.this.isPaused();
+		}
+
+		@Override
+		public void portScanned(int port, boolean open) {
+			if (open && openUdpPorts.add(port)) {
+				log.debug("Site : " + site + " open UDP port: " + port);
+				schedulePublish();
+			}
+			scannedUdpPorts.add(port);
+			portsScanned.incrementAndGet();
+		}
+
+		@Override
+		public void serviceDetected(int port, String service) {
+			if (service != null) {
+				udpServices.put(port, service);
+				detectedPorts.add(UDP_LIST_OFFSET + port);
+				schedulePublish();
+			}
+		}
+	}
+
 }
@@ -0,0 +1,274 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.portscan;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.log4j.Logger;
+import org.parosproxy.paros.Constant;
+import org.parosproxy.paros.model.Model;
+import org.parosproxy.paros.model.Session;
+
+/**
+ * The progress of a port scan, the ports already scanned and the results, saved so that the scan can be resumed
+ * after being stopped or after a crash.
+ * <p>
+ * The checkpoints are saved in a directory next to the session file (or in the ZAP home directory, if the session was
+ * not saved yet), one file per host.
+ */
+class PortScanCheckpoint {
+
+	private static final int MAGIC = 0x5a505343;
+	/**
+	 * The version with the options of the scan. The previous versions are not read, as it can't be known whether
+	 * they were saved with the same options.
+	 */
+	private static final int VERSION = 3;
+
+	private static final Logger log = Logger.getLogger(PortScanCheckpoint.class);
+
+	private static final ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "ZAP-PortScan-checkpoint");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private final String site;
+	private final int maxPort;
+	private final boolean udp;
+	private final PortSet scannedPorts;
+	private final PortSet openPorts;
+	private final Map<Integer, String> services;
+	private final PortSet scannedUdpPorts;
+	private final PortSet openUdpPorts;
+	private final Map<Integer, String> udpServices;
+
+	/**
+	 * @param maxPort the maximum port of the scan, exclusive.
+	 * @param udp {@code true} if the UDP ports are also scanned.
+	 */
+	PortScanCheckpoint(String site, int maxPort, boolean udp, PortSet scannedPorts, PortSet openPorts,
+			Map<Integer, String> services, PortSet scannedUdpPorts, PortSet openUdpPorts,
+			Map<Integer, String> udpServices) {
+		this.site = site;
+		this.maxPort = maxPort;
+		this.udp = udp;
+		this.scannedPorts = scannedPorts;
+		this.openPorts = openPorts;
+		this.services = services;
+		this.scannedUdpPorts = scannedUdpPorts;
+		this.openUdpPorts = openUdpPorts;
+		this.udpServices = udpServices;
+	}
+
+	/**
+	 * Returns the maximum port of the scan, exclusive.
+	 */
+	int getMaxPort() {
+		return maxPort;
+	}
+
+	/**
+	 * Tells whether or not the UDP ports are also scanned.
+	 */
+	boolean isUdp() {
+		return udp;
+	}
+
+	PortSet getScannedPorts() {
+		return scannedPorts;
+	}
+
+	PortSet getOpenPorts() {
+		return openPorts;
+	}
+
+	Map<Integer, String> getServices() {
+		return services;
+	}
+
+	PortSet getScannedUdpPorts() {
+		return scannedUdpPorts;
+	}
+
+	PortSet getOpenUdpPorts() {
+		return openUdpPorts;
+	}
+
+	Map<Integer, String> getUdpServices() {
+		return udpServices;
+	}
+
+	/**
+	 * Saves the checkpoint, replacing the previous one of the same site.
+	 */
+	void save() throws IOException {
+		File file = getFile(site);
+		file.getParentFile().mkdirs();
+		File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(maxPort);
+			out.writeBoolean(udp);
+			writeWords(out, scannedPorts.toWords());
+			writeWords(out, openPorts.toWords());
+			writeServices(out, services);
+			writeWords(out, scannedUdpPorts.toWords());
+			writeWords(out, openUdpPorts.toWords());
+			writeServices(out, udpServices);
+		}
+		// Don't leave a half written checkpoint if ZAP dies while saving
+		Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Saves the checkpoint in the background, logging any error.
+	 */
+	void saveLater() {
+		writer.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					save();
+				} catch (IOException e) {
+					log.warn("Failed to save the port scan checkpoint of " + site + ": " + e.getMessage(), e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Loads the checkpoint of the given site, returns {@code null} if there's none.
+	 */
+	static PortScanCheckpoint load(String site) throws IOException {
+		File file = getFile(site);
+		if (!file.isFile()) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a port scan checkpoint: " + file.getAbsolutePath());
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported version " + version + " of port scan checkpoint: "
+						+ file.getAbsolutePath());
+			}
+			int maxPort = in.readInt();
+			boolean udp = in.readBoolean();
+			PortSet scannedPorts = new PortSet(readWords(in));
+			PortSet openPorts = new PortSet(readWords(in));
+			Map<Integer, String> services = readServices(in);
+			PortSet scannedUdpPorts = new PortSet(readWords(in));
+			PortSet openUdpPorts = new PortSet(readWords(in));
+			Map<Integer, String> udpServices = readServices(in);
+			return new PortScanCheckpoint(site, maxPort, udp, scannedPorts, openPorts, services, scannedUdpPorts,
+					openUdpPorts, udpServices);
+		}
+	}
+
+	static boolean exists(String site) {
+		return getFile(site).isFile();
+	}
+
+	/**
+	 * Deletes the checkpoint of the given site in the background, after any pending save.
+	 */
+	static void deleteLater(final String site) {
+		writer.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				File file = getFile(site);
+				if (file.exists() && !file.delete()) {
+					log.warn("Failed to delete the port scan checkpoint: " + file.getAbsolutePath());
+				}
+			}
+		});
+	}
+
+	private static File getFile(String site) {
+		return new File(getDirectory(), site.replaceAll("[^A-Za-z0-9.\\-]", "_") + ".checkpoint");
+	}
+
+	private static File getDirectory() {
+		Session session = Model.getSingleton().getSession();
+		String fileName = session != null ? session.getFileName() : null;
+		if (fileName != null && fileName.length() > 0) {
+			return new File(fileName + ".portscan");
+		}
+		return new File(Constant.getZapHome(), "portscan");
+	}
+
+	private static void writeWords(DataOutputStream out, long[] words) throws IOException {
+		out.writeInt(words.length);
+		for (long word : words) {
+			out.writeLong(word);
+		}
+	}
+
+	private static long[] readWords(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length != PortSet.NUMBER_OF_WORDS) {
+			throw new IOException("Expected " + PortSet.NUMBER_OF_WORDS + " words but got " + length);
+		}
+		long[] words = new long[length];
+		for (int i = 0; i < length; i++) {
+			words[i] = in.readLong();
+		}
+		return words;
+	}
+
+	private static void writeServices(DataOutputStream out, Map<Integer, String> services) throws IOException {
+		out.writeInt(services.size());
+		for (Map.Entry<Integer, String> entry : services.entrySet()) {
+			out.writeInt(entry.getKey());
+			out.writeUTF(entry.getValue());
+		}
+	}
+
+	private static Map<Integer, String> readServices(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		Map<Integer, String> services = new HashMap<>();
+		for (int i = 0; i < count; i++) {
+			services.put(in.readInt(), in.readUTF());
+		}
+		return services;
+	}
+}
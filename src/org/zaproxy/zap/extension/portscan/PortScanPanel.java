@@ -20,12 +20,14 @@
 package org.zaproxy.zap.extension.portscan;
 
 import java.awt.Rectangle;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 import javax.swing.DefaultListModel;
 import javax.swing.ImageIcon;
 import javax.swing.JList;
 import javax.swing.JScrollPane;
-import javax.swing.ListCellRenderer;
 import javax.swing.SwingUtilities;
 
 import org.parosproxy.paros.common.AbstractParam;
@@ -41,6 +43,8 @@ public class PortScanPanel extends ScanPanel implements ScanListenner {
 
 	public static final String PANEL_NAME = "portscan";
 	
+	private ExtensionPortScan extension;
+	private Set<String> sitesToResume = Collections.synchronizedSet(new HashSet<String>());
 	private JScrollPane jScrollPane = null;
     private PortPanelCellRenderer portPanelCellRenderer = null;
 
@@ -53,7 +57,8 @@ public class PortScanPanel extends ScanPanel implements ScanListenner {
     public PortScanPanel(ExtensionPortScan extension, PortScanParam portScanParam) {
     	// 'picture list' icon
         super("ports", new ImageIcon(PortScanPanel.class.getResource("/resource/icon/16/187.png")), extension, portScanParam);
-        
+        this.extension = extension;
+
     }
 
 
@@ -118,7 +123,7 @@ public class PortScanPanel extends ScanPanel implements ScanListenner {
 		return portList;
 	}
 
-	private ListCellRenderer<Integer> getPortPanelCellRenderer() {
+	private PortPanelCellRenderer getPortPanelCellRenderer() {
         if (portPanelCellRenderer == null) {
             portPanelCellRenderer = new PortPanelCellRenderer();
             portPanelCellRenderer.setSize(new java.awt.Dimension(328,21));
@@ -130,10 +135,20 @@ public class PortScanPanel extends ScanPanel implements ScanListenner {
 
 	@Override
 	protected ScanThread newScanThread(String site, AbstractParam params) {
-		return new PortScan(site, this, (PortScanParam) params);
+		PortScan portScan = new PortScan(site, this, (PortScanParam) params, extension.getConnectionBudget(),
+				extension.getConnectScanner(), extension.getServiceDetector());
+		portScan.setResume(sitesToResume.remove(site));
+		return portScan;
 	}
 
 
+	/**
+	 * Makes the next scan of the given site continue from its checkpoint.
+	 */
+	void resumeNextScan(String site) {
+		sitesToResume.add(cleanSiteName(site, false));
+	}
+
 	@Override
 	protected void switchView(String site) {
 		if (site.indexOf(":") >= 0) {
@@ -142,6 +157,7 @@ public class PortScanPanel extends ScanPanel implements ScanListenner {
 		}
 		GenericScanner thread = this.getScanThread(site);
 		if (thread != null) {
+			getPortPanelCellRenderer().setServices(((PortScan)thread).getServices(), ((PortScan)thread).getUdpServices());
 			getPortList().setModel(((PortScan)thread).getList());
 		}
 	}
@@ -27,16 +27,34 @@ public class PortScanParam extends AbstractParam {
 	private static final String THREAD_PER_SCAN = "portscan.threadPerHost";
 	private static final String TIMEOUT_IN_MS = "portscan.timeoutInMs";
 	private static final String USE_PROXY = "portscan.useProxy";
+	private static final String MAX_IN_FLIGHT = "portscan.maxInFlight";
+	private static final String ADAPTIVE_TIMEOUT = "portscan.adaptiveTimeout";
+	private static final String MAX_IN_FLIGHT_PER_HOST = "portscan.maxInFlightPerHost";
+	private static final String DETECT_SERVICES = "portscan.detectServices";
+	private static final String TOP_PORTS_FIRST = "portscan.topPortsFirst";
+	private static final String SCAN_UDP = "portscan.scanUdp";
 		
 	public static final int DEFAULT_MAX_PORT = 9216;
 	public static final int DEFAULT_THREAD_PER_SCAN = 3;
 	public static final int DEFAULT_TIMEOUT_IN_MS = 100;
 	public static final boolean DEFAULT_USE_PROXY = true;
+	public static final int DEFAULT_MAX_IN_FLIGHT = 512;
+	public static final boolean DEFAULT_ADAPTIVE_TIMEOUT = true;
+	public static final int DEFAULT_MAX_IN_FLIGHT_PER_HOST = 256;
+	public static final boolean DEFAULT_DETECT_SERVICES = false;
+	public static final boolean DEFAULT_TOP_PORTS_FIRST = true;
+	public static final boolean DEFAULT_SCAN_UDP = false;
 		
 	private int maxPort = DEFAULT_MAX_PORT;
 	private int threadPerScan = 1;
 	private int timeoutInMs = DEFAULT_TIMEOUT_IN_MS;
 	private boolean useProxy = DEFAULT_USE_PROXY;
+	private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+	private boolean adaptiveTimeout = DEFAULT_ADAPTIVE_TIMEOUT;
+	private int maxInFlightPerHost = DEFAULT_MAX_IN_FLIGHT_PER_HOST;
+	private boolean detectServices = DEFAULT_DETECT_SERVICES;
+	private boolean topPortsFirst = DEFAULT_TOP_PORTS_FIRST;
+	private boolean scanUdp = DEFAULT_SCAN_UDP;
 	
     public PortScanParam() {
     }
@@ -58,6 +76,24 @@ public class PortScanParam extends AbstractParam {
 		try {
 			setUseProxy(getConfig().getBoolean(USE_PROXY, true));
 		} catch (Exception e) {}
+		try {
+			setMaxInFlight(getConfig().getInt(MAX_IN_FLIGHT, DEFAULT_MAX_IN_FLIGHT));
+		} catch (Exception e) {}
+		try {
+			setAdaptiveTimeout(getConfig().getBoolean(ADAPTIVE_TIMEOUT, DEFAULT_ADAPTIVE_TIMEOUT));
+		} catch (Exception e) {}
+		try {
+			setMaxInFlightPerHost(getConfig().getInt(MAX_IN_FLIGHT_PER_HOST, DEFAULT_MAX_IN_FLIGHT_PER_HOST));
+		} catch (Exception e) {}
+		try {
+			setDetectServices(getConfig().getBoolean(DETECT_SERVICES, DEFAULT_DETECT_SERVICES));
+		} catch (Exception e) {}
+		try {
+			setTopPortsFirst(getConfig().getBoolean(TOP_PORTS_FIRST, DEFAULT_TOP_PORTS_FIRST));
+		} catch (Exception e) {}
+		try {
+			setScanUdp(getConfig().getBoolean(SCAN_UDP, DEFAULT_SCAN_UDP));
+		} catch (Exception e) {}
 
     }
 
@@ -102,5 +138,82 @@ public class PortScanParam extends AbstractParam {
 	public void setUseProxy(boolean useProxy) {
 		this.useProxy = useProxy;
 	}
+
+	/**
+	 * Returns the maximum number of connects in flight at the same time, for all the hosts being scanned.
+	 */
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	public void setMaxInFlight(int maxInFlight) {
+		this.maxInFlight = maxInFlight;
+		getConfig().setProperty(MAX_IN_FLIGHT, Integer.toString(this.maxInFlight));
+	}
+
+	/**
+	 * Returns the maximum number of connects in flight at the same time to a single host, when not using a proxy.
+	 */
+	public int getMaxInFlightPerHost() {
+		return maxInFlightPerHost;
+	}
+
+	public void setMaxInFlightPerHost(int maxInFlightPerHost) {
+		this.maxInFlightPerHost = maxInFlightPerHost;
+		getConfig().setProperty(MAX_IN_FLIGHT_PER_HOST, Integer.toString(this.maxInFlightPerHost));
+	}
+
+	/**
+	 * Tells whether the service listening on each open port should be guessed, using the connection of the scan.
+	 */
+	public boolean isDetectServices() {
+		return detectServices;
+	}
+
+	public void setDetectServices(boolean detectServices) {
+		this.detectServices = detectServices;
+		getConfig().setProperty(DETECT_SERVICES, Boolean.toString(this.detectServices));
+	}
+
+	/**
+	 * Tells whether the most commonly open ports should be scanned before the others, instead of scanning all the
+	 * ports in numeric order.
+	 *
+	 * @see TopPorts
+	 */
+	public boolean isTopPortsFirst() {
+		return topPortsFirst;
+	}
+
+	public void setTopPortsFirst(boolean topPortsFirst) {
+		this.topPortsFirst = topPortsFirst;
+		getConfig().setProperty(TOP_PORTS_FIRST, Boolean.toString(this.topPortsFirst));
+	}
+
+	/**
+	 * Tells whether the UDP ports should be probed as well, along with the TCP ports. The UDP ports are not probed
+	 * when the scan is done through a proxy.
+	 */
+	public boolean isScanUdp() {
+		return scanUdp;
+	}
+
+	public void setScanUdp(boolean scanUdp) {
+		this.scanUdp = scanUdp;
+		getConfig().setProperty(SCAN_UDP, Boolean.toString(this.scanUdp));
+	}
+
+	/**
+	 * Tells whether the timeout should be lowered to what the response times of the host need, the configured
+	 * timeout is then used as the maximum.
+	 */
+	public boolean isAdaptiveTimeout() {
+		return adaptiveTimeout;
+	}
+
+	public void setAdaptiveTimeout(boolean adaptiveTimeout) {
+		this.adaptiveTimeout = adaptiveTimeout;
+		getConfig().setProperty(ADAPTIVE_TIMEOUT, Boolean.toString(this.adaptiveTimeout));
+	}
 	
 }
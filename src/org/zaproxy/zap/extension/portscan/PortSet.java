@@ -0,0 +1,110 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.portscan;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A set of ports (e.g. the open ports of a host), one bit per port (8 KB for all of them).
+ * <p>
+ * Ports can be added from any number of threads without locking, the bits are set with compare and swap.
+ */
+class PortSet {
+
+	private static final int NUMBER_OF_PORTS = 65536;
+
+	static final int NUMBER_OF_WORDS = NUMBER_OF_PORTS / 64;
+
+	private final AtomicLongArray words;
+
+	PortSet() {
+		words = new AtomicLongArray(NUMBER_OF_WORDS);
+	}
+
+	/**
+	 * Creates the set from the words of another, as returned by {@link #toWords()}.
+	 */
+	PortSet(long[] words) {
+		if (words.length != NUMBER_OF_WORDS) {
+			throw new IllegalArgumentException("Expected " + NUMBER_OF_WORDS + " words but got " + words.length);
+		}
+		this.words = new AtomicLongArray(words);
+	}
+
+	/**
+	 * Adds the given port, returns {@code true} if it was not already in the set.
+	 */
+	boolean add(int port) {
+		int index = port >>> 6;
+		long bit = 1L << (port & 63);
+		while (true) {
+			long word = words.get(index);
+			if ((word & bit) != 0) {
+				return false;
+			}
+			if (words.compareAndSet(index, word, word | bit)) {
+				return true;
+			}
+		}
+	}
+
+	boolean contains(int port) {
+		return (words.get(port >>> 6) & (1L << (port & 63))) != 0;
+	}
+
+	int size() {
+		int size = 0;
+		for (int i = 0; i < words.length(); i++) {
+			size += Long.bitCount(words.get(i));
+		}
+		return size;
+	}
+
+	/**
+	 * Returns a copy of the bits of the set, 64 ports per word.
+	 */
+	long[] toWords() {
+		long[] copy = new long[words.length()];
+		for (int i = 0; i < copy.length; i++) {
+			copy[i] = words.get(i);
+		}
+		return copy;
+	}
+
+	/**
+	 * Returns the ports in the set, in ascending order.
+	 */
+	int[] toArray() {
+		int[] ports = new int[size()];
+		int count = 0;
+		for (int i = 0; i < words.length(); i++) {
+			long word = words.get(i);
+			while (word != 0 && count < ports.length) {
+				ports[count++] = (i << 6) + Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+			}
+		}
+		if (count < ports.length) {
+			// Ports added since the size was taken are left for the next call, but don't return garbage
+			int[] copy = new int[count];
+			System.arraycopy(ports, 0, copy, 0, count);
+			return copy;
+		}
+		return ports;
+	}
+}
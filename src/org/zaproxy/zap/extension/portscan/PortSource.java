@@ -0,0 +1,35 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.portscan;
+
+/**
+ * The ports to be probed by a scan engine. Implementations must be thread safe, as the ports can be consumed by
+ * several threads at the same time.
+ */
+interface PortSource {
+
+	/**
+	 * Returns the next port to probe, or -1 if there are no more ports.
+	 */
+	int nextPort();
+
+	/**
+	 * Returns the total number of ports, including the ones already returned.
+	 */
+	int size();
+}
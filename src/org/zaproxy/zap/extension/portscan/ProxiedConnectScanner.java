@@ -0,0 +1,215 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.portscan;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A TCP connect scan engine which probes the ports through a SOCKS proxy, using blocking sockets on a fixed number
+ * of threads.
+ * <p>
+ * The ports are shared among the threads with a {@link WorkStealingPortScheduler}, so a thread stuck on filtered
+ * ports doesn't hold back the others. Each connect is also taken from the shared {@link ConnectionBudget}.
+ * <p>
+ * Every socket is closed once its probe completes (or handed to the {@link ServiceDetector}, if any, when open), and
+ * the ones still connecting are closed when the scan is stopped, so no descriptors are left behind.
+ */
+class ProxiedConnectScanner {
+
+	/**
+	 * The time to wait for each connect if none was set, the OS would otherwise wait for minutes.
+	 */
+	private static final int DEFAULT_TIMEOUT_IN_MS = 2000;
+
+	private static final int POLL_MS = 500;
+
+	private static final AtomicInteger scanCount = new AtomicInteger();
+
+	private final ConnectionBudget budget;
+	private final Proxy proxy;
+	private final String host;
+	private final int threads;
+	private final ConnectTimeout timeout;
+	private final ServiceDetector detector;
+	private final Set<Socket> sockets = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+
+	/**
+	 * @param budget the budget shared with the other scans
+	 * @param proxy the proxy the connects are done through
+	 * @param host the host to scan, resolved by the proxy
+	 * @param threads the number of threads, that is, the maximum number of connects at the same time
+	 * @param timeout the time to wait for each connect, including the proxy handshake
+	 * @param detector the detector of the services of the open ports, {@code null} to not detect them
+	 */
+	ProxiedConnectScanner(ConnectionBudget budget, Proxy proxy, String host, int threads, ConnectTimeout timeout,
+			ServiceDetector detector) {
+		this.budget = budget;
+		this.proxy = proxy;
+		this.host = host;
+		this.threads = Math.max(1, threads);
+		this.timeout = timeout;
+		this.detector = detector;
+	}
+
+	/**
+	 * Probes all the ports of the given source, returns once all of them were probed or the scan was stopped.
+	 */
+	void scan(PortSource ports, final PortProbeListener listener) {
+		final WorkStealingPortScheduler scheduler = new WorkStealingPortScheduler(
+				ports, threads, WorkStealingPortScheduler.DEFAULT_BATCH_SIZE);
+		final String namePrefix = "ZAP-PortScan-proxy-" + scanCount.incrementAndGet() + "-";
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+			private final AtomicInteger threadCount = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, namePrefix + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			for (int i = 0; i < threads; i++) {
+				final PortSource workerPorts = scheduler.getWorker(i);
+				executor.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						probePorts(workerPorts, listener);
+					}
+				});
+			}
+			executor.shutdown();
+			while (!executor.awaitTermination(POLL_MS, TimeUnit.MILLISECONDS)) {
+				if (listener.isStopped()) {
+					// Unblock the threads still connecting
+					closeSockets();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
+			closeSockets();
+		}
+	}
+
+	private void probePorts(PortSource ports, PortProbeListener listener) {
+		while (!listener.isStopped()) {
+			if (listener.isPaused()) {
+				try {
+					Thread.sleep(POLL_MS);
+				} catch (InterruptedException e) {
+					return;
+				}
+				continue;
+			}
+			try {
+				if (!budget.tryAcquire(POLL_MS)) {
+					continue;
+				}
+			} catch (InterruptedException e) {
+				return;
+			}
+			int port = ports.nextPort();
+			if (port == -1) {
+				budget.release();
+				return;
+			}
+			Socket socket;
+			try {
+				socket = connect(port);
+			} finally {
+				budget.release();
+			}
+			if (listener.isStopped()) {
+				// The socket might have been closed because of the stop, the result is not reliable
+				if (socket != null) {
+					close(socket);
+				}
+				return;
+			}
+			listener.portScanned(port, socket != null);
+			if (socket != null) {
+				if (detector != null) {
+					detector.detect(host, port, socket, proxy, listener);
+				} else {
+					close(socket);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Connects to the given port, returns the connected socket or {@code null} if not open.
+	 */
+	private Socket connect(int port) {
+		Socket socket = new Socket(proxy);
+		sockets.add(socket);
+		int timeoutInMs = timeout.getTimeoutInMs();
+		if (timeoutInMs == 0) {
+			timeoutInMs = DEFAULT_TIMEOUT_IN_MS;
+		}
+		long start = System.currentTimeMillis();
+		try {
+			socket.setSoLinger(true, 0);
+			socket.connect(InetSocketAddress.createUnresolved(host, port), timeoutInMs);
+			timeout.addRoundTripTime(System.currentTimeMillis() - start);
+			sockets.remove(socket);
+			return socket;
+		} catch (SocketTimeoutException e) {
+			// Filtered
+		} catch (IOException e) {
+			if (!socket.isClosed()) {
+				// Answered, most likely refused
+				timeout.addRoundTripTime(System.currentTimeMillis() - start);
+			}
+			// The host is not listening on this port (or the proxy refused the connect)
+		}
+		sockets.remove(socket);
+		close(socket);
+		return null;
+	}
+
+	private void closeSockets() {
+		for (Socket socket : sockets) {
+			close(socket);
+		}
+	}
+
+	private static void close(Socket socket) {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// Ignore
+		}
+	}
+}
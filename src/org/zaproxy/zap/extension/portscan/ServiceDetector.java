@@ -0,0 +1,352 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.portscan;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+
+/**
+ * Guesses the service listening on the open ports, reusing the connection of the port scan.
+ * <p>
+ * It first waits for the service to talk (e.g. SSH, FTP, SMTP), if it doesn't an HTTP request is sent and if that
+ * doesn't get a recognisable answer either a TLS ClientHello is sent, on a new connection. The detections are run on
+ * a bounded pool, if the pool is full the connection is closed and no guess is made.
+ */
+class ServiceDetector {
+
+	public static final String HTTP = "http";
+	public static final String TLS = "tls";
+	public static final String SSH = "ssh";
+	public static final String FTP = "ftp";
+	public static final String SMTP = "smtp";
+	public static final String POP3 = "pop3";
+	public static final String IMAP = "imap";
+	public static final String MYSQL = "mysql";
+	public static final String UNKNOWN = "unknown";
+
+	private static final int THREADS = 8;
+	private static final int MAX_QUEUED = 256;
+
+	/**
+	 * How long to wait for the services which talk first.
+	 */
+	private static final int BANNER_WAIT_MS = 1000;
+
+	/**
+	 * How long to wait for the answer to a probe.
+	 */
+	private static final int PROBE_WAIT_MS = 2000;
+
+	private final ThreadPoolExecutor executor;
+
+	ServiceDetector() {
+		executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(MAX_QUEUED), new ThreadFactory() {
+
+					private final AtomicInteger threadCount = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "ZAP-PortScan-detect-" + threadCount.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Detects the service of a port connected with a non-blocking channel, the channel is closed once done.
+	 */
+	void detect(String host, int port, SocketChannel channel, PortProbeListener listener) {
+		submit(host, port, new ChannelConnection(channel), listener);
+	}
+
+	/**
+	 * Detects the service of a port connected through a proxy, the socket is closed once done.
+	 */
+	void detect(String host, int port, Socket socket, Proxy proxy, PortProbeListener listener) {
+		submit(host, port, new SocketConnection(socket, proxy), listener);
+	}
+
+	void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private void submit(final String host, final int port, final Connection connection,
+			final PortProbeListener listener) {
+		try {
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					String service = null;
+					try {
+						if (!listener.isStopped()) {
+							service = detect(host, port, connection);
+						}
+					} catch (IOException e) {
+						// No guess
+					} finally {
+						connection.close();
+					}
+					listener.serviceDetected(port, service);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			connection.close();
+			listener.serviceDetected(port, null);
+		}
+	}
+
+	private static String detect(String host, int port, Connection connection) throws IOException {
+		byte[] buffer = new byte[512];
+		int read = connection.read(buffer, BANNER_WAIT_MS);
+		if (read > 0) {
+			return guessFromBanner(buffer, read);
+		}
+
+		if (read == 0) {
+			String request = "GET / HTTP/1.0\r\nHost: " + host + (port != 80 ? ":" + port : "") + "\r\n\r\n";
+			connection.write(request.getBytes(StandardCharsets.US_ASCII));
+			read = connection.read(buffer, PROBE_WAIT_MS);
+			if (read > 0) {
+				return guessFromBanner(buffer, read);
+			}
+		}
+
+		// Closed or silent, some TLS services drop the connection on unexpected data
+		Connection tlsConnection = connection.reopen(host, port);
+		connection.close();
+		try {
+			tlsConnection.write(createClientHello(host, port));
+			read = tlsConnection.read(buffer, PROBE_WAIT_MS);
+			if (read > 0) {
+				return guessFromBanner(buffer, read);
+			}
+		} finally {
+			tlsConnection.close();
+		}
+		return null;
+	}
+
+	private static String guessFromBanner(byte[] data, int length) {
+		if (length >= 2 && (data[0] == 0x16 || data[0] == 0x15) && data[1] == 0x03) {
+			// TLS handshake or alert record
+			return TLS;
+		}
+		if (length >= 5 && data[4] == 0x0a && (data[3] & 0xff) == 0) {
+			// MySQL initial handshake packet, protocol 10
+			return MYSQL;
+		}
+		String banner = new String(data, 0, length, StandardCharsets.ISO_8859_1);
+		if (banner.startsWith("HTTP/")) {
+			return HTTP;
+		}
+		if (banner.startsWith("SSH-")) {
+			return SSH;
+		}
+		if (banner.startsWith("+OK")) {
+			return POP3;
+		}
+		if (banner.startsWith("* OK")) {
+			return IMAP;
+		}
+		if (banner.startsWith("220")) {
+			String upper = banner.toUpperCase();
+			if (upper.contains("SMTP") || upper.contains("MAIL")) {
+				return SMTP;
+			}
+			return FTP;
+		}
+		return UNKNOWN;
+	}
+
+	private static byte[] createClientHello(String host, int port) throws IOException {
+		try {
+			SSLEngine engine = SSLContext.getDefault().createSSLEngine(host, port);
+			engine.setUseClientMode(true);
+			engine.beginHandshake();
+			ByteBuffer hello = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+			engine.wrap(ByteBuffer.allocate(0), hello);
+			hello.flip();
+			byte[] bytes = new byte[hello.remaining()];
+			hello.get(bytes);
+			return bytes;
+		} catch (Exception e) {
+			throw new IOException("Failed to create the ClientHello: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * A connection to the port being detected.
+	 */
+	private abstract static class Connection {
+
+		abstract void write(byte[] data) throws IOException;
+
+		/**
+		 * Reads the data available within the given time, returns the number of bytes read, {@code 0} if none or
+		 * {@code -1} if the connection was closed.
+		 */
+		abstract int read(byte[] buffer, int timeoutInMs) throws IOException;
+
+		/**
+		 * Opens a new connection to the same port, the same way.
+		 */
+		abstract Connection reopen(String host, int port) throws IOException;
+
+		abstract void close();
+	}
+
+	private static class ChannelConnection extends Connection {
+
+		private final SocketChannel channel;
+
+		ChannelConnection(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		@Override
+		void write(byte[] data) throws IOException {
+			ByteBuffer buffer = ByteBuffer.wrap(data);
+			long end = System.currentTimeMillis() + PROBE_WAIT_MS;
+			try (Selector selector = Selector.open()) {
+				channel.register(selector, SelectionKey.OP_WRITE);
+				while (buffer.hasRemaining()) {
+					long remaining = end - System.currentTimeMillis();
+					if (remaining <= 0) {
+						throw new SocketTimeoutException();
+					}
+					selector.select(remaining);
+					selector.selectedKeys().clear();
+					channel.write(buffer);
+				}
+			}
+		}
+
+		@Override
+		int read(byte[] data, int timeoutInMs) throws IOException {
+			ByteBuffer buffer = ByteBuffer.wrap(data);
+			try (Selector selector = Selector.open()) {
+				channel.register(selector, SelectionKey.OP_READ);
+				if (selector.select(timeoutInMs) == 0) {
+					return 0;
+				}
+				return channel.read(buffer);
+			}
+		}
+
+		@Override
+		Connection reopen(String host, int port) throws IOException {
+			SocketChannel newChannel = SocketChannel.open();
+			try {
+				newChannel.configureBlocking(false);
+				newChannel.connect(channel.getRemoteAddress());
+				try (Selector selector = Selector.open()) {
+					newChannel.register(selector, SelectionKey.OP_CONNECT);
+					if (selector.select(PROBE_WAIT_MS) == 0 || !newChannel.finishConnect()) {
+						throw new SocketTimeoutException();
+					}
+				}
+			} catch (IOException e) {
+				newChannel.close();
+				throw e;
+			}
+			return new ChannelConnection(newChannel);
+		}
+
+		@Override
+		void close() {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// Ignore
+			}
+		}
+	}
+
+	private static class SocketConnection extends Connection {
+
+		private final Socket socket;
+		private final Proxy proxy;
+
+		SocketConnection(Socket socket, Proxy proxy) {
+			this.socket = socket;
+			this.proxy = proxy;
+		}
+
+		@Override
+		void write(byte[] data) throws IOException {
+			OutputStream os = socket.getOutputStream();
+			os.write(data);
+			os.flush();
+		}
+
+		@Override
+		int read(byte[] data, int timeoutInMs) throws IOException {
+			socket.setSoTimeout(timeoutInMs);
+			InputStream is = socket.getInputStream();
+			try {
+				return is.read(data);
+			} catch (SocketTimeoutException e) {
+				return 0;
+			}
+		}
+
+		@Override
+		Connection reopen(String host, int port) throws IOException {
+			Socket newSocket = new Socket(proxy);
+			try {
+				newSocket.connect(InetSocketAddress.createUnresolved(host, port), PROBE_WAIT_MS);
+			} catch (IOException e) {
+				newSocket.close();
+				throw e;
+			}
+			return new SocketConnection(newSocket, proxy);
+		}
+
+		@Override
+		void close() {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Ignore
+			}
+		}
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.portscan;
+
+/**
+ * A {@link PortSource} which skips the ports of another source that are in a given set, for example, the ports
+ * already scanned.
+ */
+class SkippingPortSource implements PortSource {
+
+	private final PortSource source;
+	private final PortSet skipped;
+
+	SkippingPortSource(PortSource source, PortSet skipped) {
+		this.source = source;
+		this.skipped = skipped;
+	}
+
+	@Override
+	public int nextPort() {
+		int port;
+		do {
+			port = source.nextPort();
+		} while (port != -1 && skipped.contains(port));
+		return port;
+	}
+
+	@Override
+	public int size() {
+		return source.size();
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.portscan;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.apache.log4j.Logger;
+import org.parosproxy.paros.Constant;
+
+/**
+ * The TCP ports ranked by how often they are found open, used to scan the most likely open ports first.
+ * <p>
+ * The list is read from the file {@value #FILE_NAME} in the {@code portscan} directory of the ZAP home, if present,
+ * otherwise from the one bundled with the add-on. It is read once and kept in memory.
+ */
+final class TopPorts {
+
+	static final String FILE_NAME = "top-ports.txt";
+
+	private static final String RESOURCE = "/org/zaproxy/zap/extension/portscan/resource/" + FILE_NAME;
+
+	private static final Logger log = Logger.getLogger(TopPorts.class);
+
+	private static int[] rankedPorts;
+
+	private TopPorts() {
+	}
+
+	/**
+	 * Returns the source of the ports from 1 to {@code lastPort}, inclusive, with the given ports first, in the order
+	 * given, followed by the remaining ports in ascending order.
+	 */
+	static PortSource createPortSource(int[] ranked, int lastPort) {
+		int[] ports = new int[Math.max(0, lastPort)];
+		BitSet added = new BitSet(lastPort + 1);
+		int count = 0;
+		for (int port : ranked) {
+			if (port <= lastPort && ! added.get(port)) {
+				added.set(port);
+				ports[count++] = port;
+			}
+		}
+		for (int port = 1; port <= lastPort; port++) {
+			if (! added.get(port)) {
+				ports[count++] = port;
+			}
+		}
+		return new PortList(ports);
+	}
+
+	static synchronized int[] getRankedPorts() {
+		if (rankedPorts == null) {
+			rankedPorts = load();
+		}
+		return rankedPorts;
+	}
+
+	private static int[] load() {
+		File file = new File(new File(Constant.getZapHome(), "portscan"), FILE_NAME);
+		try (InputStream in = file.isFile() ? new FileInputStream(file) : TopPorts.class.getResourceAsStream(RESOURCE)) {
+			if (in == null) {
+				log.warn("Resource " + RESOURCE + " not found, scanning the ports in numeric order.");
+				return new int[0];
+			}
+			return read(in);
+		} catch (IOException e) {
+			log.error("Failed to read the top ports: " + e.getMessage(), e);
+			return new int[0];
+		}
+	}
+
+	private static int[] read(InputStream in) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+		int[] ports = new int[256];
+		int count = 0;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			line = line.trim();
+			if (line.length() == 0 || line.startsWith("#")) {
+				continue;
+			}
+			try {
+				int port = Integer.parseInt(line);
+				if (port < 1 || port > 65535) {
+					log.warn("Ignoring invalid top port: " + line);
+					continue;
+				}
+				if (count == ports.length) {
+					ports = Arrays.copyOf(ports, count * 2);
+				}
+				ports[count++] = port;
+			} catch (NumberFormatException e) {
+				log.warn("Ignoring invalid top port: " + line);
+			}
+		}
+		return Arrays.copyOf(ports, count);
+	}
+}
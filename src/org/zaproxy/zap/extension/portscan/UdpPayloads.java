@@ -0,0 +1,137 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.portscan;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The datagrams sent to probe the UDP ports.
+ * <p>
+ * Most UDP services ignore anything that is not a valid request of their protocol, so the well known ports are sent a
+ * harmless request of the service usually listening on them (e.g. a DNS query for the root name servers, an SNMP
+ * get of the system description), the other ports are sent a line break.
+ */
+final class UdpPayloads {
+
+	static final String DNS = "dns";
+	static final String NTP = "ntp";
+	static final String SNMP = "snmp";
+	static final String NETBIOS_NS = "netbios-ns";
+	static final String SSDP = "ssdp";
+	static final String SIP = "sip";
+	static final String TFTP = "tftp";
+	static final String RPCBIND = "rpcbind";
+	static final String STUN = "stun";
+	static final String MSSQL_BROWSER = "ms-sql-m";
+	static final String MEMCACHED = "memcached";
+
+	private static final byte[] GENERIC = { '\r', '\n' };
+
+	private static final Map<Integer, Payload> PAYLOADS = new HashMap<>();
+
+	static {
+		// Standard query, recursion desired, for the NS records of the root: the header, then the question with the
+		// root name (00), QTYPE NS (0002) and QCLASS IN (0001)
+		byte[] dns = hex("1234010000010000000000000000020001");
+		add(DNS, dns, 53, 5353);
+		// Version 3, client mode, the rest of the header empty
+		byte[] ntp = new byte[48];
+		ntp[0] = 0x1b;
+		add(NTP, ntp, 123);
+		// SNMPv1 get-request of sysDescr.0 with the community "public"
+		add(SNMP, hex("302902010004067075626c6963a01c020412345678020100020100300e300c06082b060102010101000500"), 161);
+		// Node status request of the wildcard name
+		add(NETBIOS_NS, hex("80f00000000100000000000020434b4141414141414141414141414141414141414141414141414141414141410000210001"),
+				137);
+		add(SSDP, ascii("M-SEARCH * HTTP/1.1\r\nHOST: 239.255.255.250:1900\r\nMAN: \"ssdp:discover\"\r\nMX: 1\r\n"
+				+ "ST: ssdp:all\r\n\r\n"), 1900);
+		add(SIP, ascii("OPTIONS sip:zap SIP/2.0\r\nVia: SIP/2.0/UDP zap;branch=z9hG4bK-zap\r\nFrom: <sip:zap@zap>;tag=zap\r\n"
+				+ "To: <sip:zap@zap>\r\nCall-ID: zap\r\nCSeq: 1 OPTIONS\r\nMax-Forwards: 70\r\nContent-Length: 0\r\n\r\n"), 5060);
+		// Read request of a file unlikely to exist, answered with an error
+		add(TFTP, ascii("\0\1zap-portscan\0octet\0"), 69);
+		// NULL procedure call of the portmapper, version 2, no authentication
+		add(RPCBIND, hex("123456780000000000000002000186a0000000020000000000000000000000000000000000000000"), 111);
+		// Binding request
+		add(STUN, hex("000100002112a442000102030405060708090a0b"), 3478);
+		// Instances enumeration
+		add(MSSQL_BROWSER, new byte[] { 0x02 }, 1434);
+		// Version command, with the frame header of the UDP protocol
+		add(MEMCACHED, ascii("\0\1\0\0\0\1\0\0version\r\n"), 11211);
+	}
+
+	private UdpPayloads() {
+	}
+
+	/**
+	 * Returns the datagram to send to the given port, never empty as empty datagrams are not sent.
+	 */
+	static byte[] getPayload(int port) {
+		Payload payload = PAYLOADS.get(port);
+		return payload != null ? payload.data : GENERIC;
+	}
+
+	/**
+	 * Returns the service whose request is sent to the given port, or {@code null} if none.
+	 */
+	static String getService(int port) {
+		Payload payload = PAYLOADS.get(port);
+		return payload != null ? payload.service : null;
+	}
+
+	/**
+	 * Returns the ports with a request of a specific service, in ascending order.
+	 */
+	static int[] getPorts() {
+		PortSet ports = new PortSet();
+		for (int port : PAYLOADS.keySet()) {
+			ports.add(port);
+		}
+		return ports.toArray();
+	}
+
+	private static void add(String service, byte[] data, int... ports) {
+		for (int port : ports) {
+			PAYLOADS.put(port, new Payload(service, data));
+		}
+	}
+
+	private static byte[] ascii(String data) {
+		return data.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	private static byte[] hex(String data) {
+		byte[] bytes = new byte[data.length() / 2];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) Integer.parseInt(data.substring(i * 2, i * 2 + 2), 16);
+		}
+		return bytes;
+	}
+
+	private static class Payload {
+
+		private final String service;
+		private final byte[] data;
+
+		private Payload(String service, byte[] data) {
+			this.service = service;
+			this.data = data;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.portscan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Shares the ports to probe among several workers.
+ * <p>
+ * The ports are split in small batches which are dealt to the workers in turn, each worker takes the batches from the
+ * front of its own queue and, once empty, steals them from the back of the other queues. So the workers which hit
+ * open or refused ports (fast) help the ones waiting on filtered ports (slow) rather than sitting idle, and no
+ * coordination is needed while each worker has its own batches.
+ */
+class WorkStealingPortScheduler {
+
+	public static final int DEFAULT_BATCH_SIZE = 32;
+
+	private final List<ConcurrentLinkedDeque<int[]>> queues;
+	private final int size;
+
+	/**
+	 * Creates the scheduler with all the ports of the given source, in the same order.
+	 */
+	WorkStealingPortScheduler(PortSource ports, int workers, int batchSize) {
+		workers = Math.max(1, workers);
+		batchSize = Math.max(1, batchSize);
+		queues = new ArrayList<>(workers);
+		for (int i = 0; i < workers; i++) {
+			queues.add(new ConcurrentLinkedDeque<int[]>());
+		}
+
+		int count = 0;
+		int worker = 0;
+		int[] batch = new int[batchSize];
+		int used = 0;
+		int port;
+		while ((port = ports.nextPort()) != -1) {
+			batch[used++] = port;
+			count++;
+			if (used == batchSize) {
+				queues.get(worker).add(batch);
+				worker = (worker + 1) % workers;
+				batch = new int[batchSize];
+				used = 0;
+			}
+		}
+		if (used > 0) {
+			int[] last = new int[used];
+			System.arraycopy(batch, 0, last, 0, used);
+			queues.get(worker).add(last);
+		}
+		size = count;
+	}
+
+	int getNumberOfWorkers() {
+		return queues.size();
+	}
+
+	/**
+	 * Returns the ports of the given worker, must be used only by that worker's thread.
+	 */
+	PortSource getWorker(int index) {
+		return new Worker(index);
+	}
+
+	private int[] takeBatch(int index) {
+		int[] batch = queues.get(index).pollFirst();
+		if (batch != null) {
+			return batch;
+		}
+		for (int i = 1; i < queues.size(); i++) {
+			batch = queues.get((index + i) % queues.size()).pollLast();
+			if (batch != null) {
+				return batch;
+			}
+		}
+		return null;
+	}
+
+	private class Worker implements PortSource {
+
+		private final int index;
+		private int[] batch;
+		private int next;
+
+		Worker(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public int nextPort() {
+			if (batch == null || next == batch.length) {
+				batch = takeBatch(index);
+				next = 0;
+				if (batch == null) {
+					return -1;
+				}
+			}
+			return batch[next++];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
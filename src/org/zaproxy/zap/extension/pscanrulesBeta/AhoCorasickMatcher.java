@@ -0,0 +1,189 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.pscanrulesBeta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Finds which of a set of strings (the patterns) a text contains, ignoring the case, in a single pass over the
+ * text, regardless of the number of patterns.
+ * <p>
+ * The patterns are compiled into an Aho-Corasick automaton, a trie of the patterns where each state also knows the
+ * longest suffix of its prefix which is the prefix of another pattern, followed when the next character doesn't
+ * match. Once built the automaton is never changed, so it can be used by any number of threads.
+ */
+final class AhoCorasickMatcher {
+
+	private static final int ROOT = 0;
+	private static final int NO_MATCH = Integer.MAX_VALUE;
+	private static final int ASCII = 128;
+
+	// The transitions of each state, the characters sorted for a binary search
+	private final char[][] transitionChars;
+	private final int[][] transitionStates;
+	// The transitions of the root for ASCII characters, the most common, -1 if none
+	private final int[] rootAscii = new int[ASCII];
+	private final int[] failure;
+	// The lowest index of the patterns that end in each state, including the ones ending in its failure states
+	private final int[] firstMatch;
+	private final int patternCount;
+
+	/**
+	 * @param patterns the patterns to find, empty patterns are ignored
+	 */
+	AhoCorasickMatcher(List<String> patterns) {
+		this.patternCount = patterns.size();
+		List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+		List<Integer> matches = new ArrayList<>();
+		trie.add(new TreeMap<Character, Integer>());
+		matches.add(NO_MATCH);
+		for (int i = 0; i < patterns.size(); i++) {
+			String pattern = patterns.get(i);
+			if (pattern.isEmpty()) {
+				continue;
+			}
+			int state = ROOT;
+			for (int j = 0; j < pattern.length(); j++) {
+				char c = normalize(pattern.charAt(j));
+				Integer next = trie.get(state).get(c);
+				if (next == null) {
+					next = trie.size();
+					trie.add(new TreeMap<Character, Integer>());
+					matches.add(NO_MATCH);
+					trie.get(state).put(c, next);
+				}
+				state = next;
+			}
+			matches.set(state, Math.min(matches.get(state), i));
+		}
+
+		int size = trie.size();
+		transitionChars = new char[size][];
+		transitionStates = new int[size][];
+		for (int state = 0; state < size; state++) {
+			TreeMap<Character, Integer> transitions = trie.get(state);
+			transitionChars[state] = new char[transitions.size()];
+			transitionStates[state] = new int[transitions.size()];
+			int i = 0;
+			for (Map.Entry<Character, Integer> transition : transitions.entrySet()) {
+				transitionChars[state][i] = transition.getKey();
+				transitionStates[state][i] = transition.getValue();
+				i++;
+			}
+		}
+		Arrays.fill(rootAscii, -1);
+		for (int i = 0; i < transitionChars[ROOT].length; i++) {
+			if (transitionChars[ROOT][i] < ASCII) {
+				rootAscii[transitionChars[ROOT][i]] = transitionStates[ROOT][i];
+			}
+		}
+
+		// Breadth first, so the failure state of a state is always done before it
+		failure = new int[size];
+		firstMatch = new int[size];
+		firstMatch[ROOT] = NO_MATCH;
+		int[] queue = new int[size];
+		int head = 0;
+		int tail = 0;
+		for (int child : transitionStates[ROOT]) {
+			failure[child] = ROOT;
+			firstMatch[child] = matches.get(child);
+			queue[tail++] = child;
+		}
+		while (head < tail) {
+			int state = queue[head++];
+			for (int i = 0; i < transitionChars[state].length; i++) {
+				char c = transitionChars[state][i];
+				int child = transitionStates[state][i];
+				failure[child] = next(failure[state], c);
+				firstMatch[child] = Math.min(matches.get(child), firstMatch[failure[child]]);
+				queue[tail++] = child;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of patterns given, including the empty ones.
+	 */
+	int getPatternCount() {
+		return patternCount;
+	}
+
+	/**
+	 * Returns the index of the first pattern, in the order given, contained in the given text, ignoring the case,
+	 * or {@code -1} if none.
+	 */
+	int findFirstPattern(CharSequence text) {
+		int first = NO_MATCH;
+		int state = ROOT;
+		for (int i = 0; i < text.length(); i++) {
+			state = next(state, normalize(text.charAt(i)));
+			if (firstMatch[state] < first) {
+				first = firstMatch[state];
+				if (first == 0) {
+					// Can't find a better one
+					break;
+				}
+			}
+		}
+		return first == NO_MATCH ? -1 : first;
+	}
+
+	/**
+	 * Tells whether or not the given text contains any of the patterns, ignoring the case.
+	 */
+	boolean matches(CharSequence text) {
+		int state = ROOT;
+		for (int i = 0; i < text.length(); i++) {
+			state = next(state, normalize(text.charAt(i)));
+			if (firstMatch[state] != NO_MATCH) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private int next(int state, char c) {
+		while (true) {
+			int child = child(state, c);
+			if (child != -1) {
+				return child;
+			}
+			if (state == ROOT) {
+				return ROOT;
+			}
+			state = failure[state];
+		}
+	}
+
+	private int child(int state, char c) {
+		if (state == ROOT && c < ASCII) {
+			return rootAscii[c];
+		}
+		int index = Arrays.binarySearch(transitionChars[state], c);
+		return index >= 0 ? transitionStates[state][index] : -1;
+	}
+
+	private static char normalize(char c) {
+		return Character.toLowerCase(c);
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.pscanrulesBeta;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.parosproxy.paros.core.scanner.Alert;
+import org.parosproxy.paros.model.Model;
+import org.parosproxy.paros.model.Session;
+
+/**
+ * Keeps track of the alerts raised by the rules, so that the same finding is raised once rather than for every
+ * response of the same page.
+ * <p>
+ * Two alerts are the same finding if raised by the same rule, with the same name, for the same normalized URL (see
+ * {@link #normalizeUrl(String)}) and with the same evidence, parameter and other info. Only a fingerprint of each
+ * finding is kept, in a bounded LRU cache, so a finding not seen for a long time is raised again. The cache is
+ * cleared when the session changes.
+ * <p>
+ * Enabled by default, it can be disabled with the system property {@value #DEDUPLICATE_PROPERTY} set to
+ * {@code false}.
+ */
+final class AlertDeduplicator {
+
+	/**
+	 * The system property that enables the deduplication of the alerts.
+	 */
+	static final String DEDUPLICATE_PROPERTY = "zap.pscanrulesBeta.deduplicateAlerts";
+
+	/**
+	 * The maximum number of findings remembered.
+	 */
+	static final int MAX_FINDINGS = 50000;
+
+	private static final Logger logger = Logger.getLogger(AlertDeduplicator.class);
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private static final AlertDeduplicator instance = new AlertDeduplicator(
+			Boolean.parseBoolean(System.getProperty(DEDUPLICATE_PROPERTY, "true")), MAX_FINDINGS);
+
+	private final boolean enabled;
+
+	// Guarded by this
+	private final Map<Long, Boolean> findings;
+	private Object session;
+
+	AlertDeduplicator(boolean enabled, final int maxFindings) {
+		this.enabled = enabled;
+		this.findings = new LinkedHashMap<Long, Boolean>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+				return size() > maxFindings;
+			}
+		};
+	}
+
+	static AlertDeduplicator getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Tells whether or not the given alert is a finding already raised, remembering it if not.
+	 */
+	boolean isDuplicate(Alert alert) {
+		return isDuplicate(alert, getCurrentSession());
+	}
+
+	/**
+	 * Tells whether or not the given alert is a finding already raised in the given session, remembering it if not.
+	 * The findings of other sessions are forgotten.
+	 */
+	boolean isDuplicate(Alert alert, Object currentSession) {
+		if (!enabled) {
+			return false;
+		}
+		long fingerprint = fingerprint(alert);
+		boolean duplicate;
+		synchronized (this) {
+			if (currentSession != session) {
+				session = currentSession;
+				findings.clear();
+			}
+			duplicate = findings.put(fingerprint, Boolean.TRUE) != null;
+		}
+		if (duplicate && logger.isDebugEnabled()) {
+			logger.debug("Suppressed duplicate alert \"" + alert.getAlert() + "\" of rule " + alert.getPluginId()
+					+ " for " + alert.getUri());
+		}
+		return duplicate;
+	}
+
+	private static Session getCurrentSession() {
+		Model model = Model.getSingleton();
+		return model != null ? model.getSession() : null;
+	}
+
+	private static long fingerprint(Alert alert) {
+		long hash = FNV_OFFSET_BASIS;
+		hash = hash(hash, Integer.toString(alert.getPluginId()));
+		hash = hash(hash, alert.getAlert());
+		hash = hash(hash, normalizeUrl(alert.getUri()));
+		hash = hash(hash, alert.getParam());
+		hash = hash(hash, alert.getEvidence());
+		hash = hash(hash, alert.getOtherInfo());
+		return hash;
+	}
+
+	private static long hash(long hash, String value) {
+		if (value == null) {
+			return (hash ^ 0xff) * FNV_PRIME;
+		}
+		// Include the length, so that ("ab", "c") differs from ("a", "bc")
+		hash = (hash ^ value.length()) * FNV_PRIME;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+			hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+		}
+		return hash;
+	}
+
+	/**
+	 * Normalizes the given URL, so that the URLs of the same page are equal: the scheme and host are lower cased
+	 * (but not the user info), the fragment removed, and the query reduced to the sorted names of its parameters.
+	 * <p>
+	 * For example, {@code HTTP://User@Example.com/page?b=2&a=1#top} is normalized to
+	 * {@code http://User@example.com/page?a&b}.
+	 */
+	static String normalizeUrl(String url) {
+		if (url == null) {
+			return "";
+		}
+		int end = url.indexOf('#');
+		if (end == -1) {
+			end = url.length();
+		}
+		int queryStart = url.indexOf('?');
+		if (queryStart > end) {
+			queryStart = -1;
+		}
+		int pathEnd = queryStart != -1 ? queryStart : end;
+
+		int authorityStart = url.indexOf("://");
+		authorityStart = authorityStart != -1 && authorityStart < pathEnd ? authorityStart + 3 : 0;
+		int pathStart = url.indexOf('/', authorityStart);
+		if (pathStart == -1 || pathStart > pathEnd) {
+			pathStart = pathEnd;
+		}
+		int hostStart = url.lastIndexOf('@', pathStart - 1) + 1;
+		if (hostStart < authorityStart) {
+			hostStart = authorityStart;
+		}
+
+		StringBuilder normalized = new StringBuilder(end);
+		normalized.append(url.substring(0, authorityStart).toLowerCase(Locale.ROOT));
+		normalized.append(url, authorityStart, hostStart);
+		normalized.append(url.substring(hostStart, pathStart).toLowerCase(Locale.ROOT));
+		normalized.append(url, pathStart, pathEnd);
+		if (queryStart != -1) {
+			String[] names = url.substring(queryStart + 1, end).split("&");
+			for (int i = 0; i < names.length; i++) {
+				int nameEnd = names[i].indexOf('=');
+				if (nameEnd != -1) {
+					names[i] = names[i].substring(0, nameEnd);
+				}
+			}
+			Arrays.sort(names);
+			normalized.append('?');
+			for (int i = 0; i < names.length; i++) {
+				if (i > 0) {
+					normalized.append('&');
+				}
+				normalized.append(names[i]);
+			}
+		}
+		return normalized.toString();
+	}
+}
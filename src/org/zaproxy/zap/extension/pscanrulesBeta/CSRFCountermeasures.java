@@ -17,10 +17,10 @@
  */
 package org.zaproxy.zap.extension.pscanrulesBeta;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import net.htmlparser.jericho.Element;
-import net.htmlparser.jericho.HTMLElementName;
 import net.htmlparser.jericho.Source;
 
 import org.apache.log4j.Logger;
@@ -59,6 +59,7 @@ public class CSRFCountermeasures extends PluginPassiveScanner {
      * the passive scan thread class used
      */
 	private PassiveScanThread parent = null;
+	private final ResponseScanCache scanCache = new ResponseScanCache();
 	
 	/**
 	 * the logger
@@ -97,11 +98,9 @@ public class CSRFCountermeasures extends PluginPassiveScanner {
 	 */
 	@Override
 	public void scanHttpResponseReceive(HttpMessage msg, int id, Source source) {
-		//need to do this if we are to be able to get an element's parent. Do it as early as possible in the logic 
-		source.fullSequentialParse();
-		
-		long start = System.currentTimeMillis();
-		
+		if (ParallelRuleExecutor.scanResponse(this, parent, msg, id, source)) {
+			return;
+		}
 		ExtensionAntiCSRF extAntiCSRF = 
 			(ExtensionAntiCSRF) Control.getSingleton().getExtensionLoader().getExtension(ExtensionAntiCSRF.NAME);
 		
@@ -109,8 +108,24 @@ public class CSRFCountermeasures extends PluginPassiveScanner {
 			return;
 		}
 		
-		List<Element> formElements = source.getAllElements(HTMLElementName.FORM);
-		List<String> tokenNames = extAntiCSRF.getAntiCsrfTokenNames();
+		// Copy the token names, the previous results no longer apply if they are changed
+		List<String> tokenNames = new ArrayList<>(extAntiCSRF.getAntiCsrfTokenNames());
+		ResponseScanCache.Scan scan = scanCache.begin(msg, tokenNames);
+		if (scan == null) {
+			// Same content already scanned, with no findings
+			return;
+		}
+		scanResponse(msg, id, source, tokenNames);
+		scanCache.end(scan);
+	}
+
+	private void scanResponse(HttpMessage msg, int id, Source source, List<String> tokenNames) {
+		//the index does a full sequential parse, needed to be able to get an element's parent. Do it as early as possible in the logic 
+		HtmlElementIndex elementIndex = HtmlElementIndex.get(source);
+		
+		long start = System.currentTimeMillis();
+		
+		List<Element> formElements = elementIndex.getForms();
 		boolean foundCsrfToken = false;
 		
 		if (formElements != null && formElements.size() > 0) {
@@ -133,7 +148,7 @@ public class CSRFCountermeasures extends PluginPassiveScanner {
 				}
 					
 				
-				List<Element> inputElements = formElement.getAllElements(HTMLElementName.INPUT);
+				List<Element> inputElements = elementIndex.getInputs(formElement);
 				if (sb.length() > 0) {
 					sb.append("], ");
 				} 
@@ -197,7 +212,7 @@ public class CSRFCountermeasures extends PluginPassiveScanner {
 							9,	// WASC Id
 				            msg);
 
-			    parent.raiseAlert(id, alert);
+			    ParallelRuleExecutor.raiseAlert(parent, id, alert);
 			}
 		}
 		if (logger.isDebugEnabled()) {
@@ -20,10 +20,8 @@ package org.zaproxy.zap.extension.pscanrulesBeta;
 import java.util.List;
 
 import net.htmlparser.jericho.Element;
-import net.htmlparser.jericho.HTMLElementName;
 import net.htmlparser.jericho.Source;
 import net.htmlparser.jericho.StartTag;
-import net.htmlparser.jericho.StartTagType;
 
 import org.parosproxy.paros.Constant;
 import org.parosproxy.paros.core.scanner.Alert;
@@ -39,6 +37,7 @@ import org.zaproxy.zap.extension.pscan.PluginPassiveScanner;
 public class CharsetMismatchScanner extends PluginPassiveScanner {
 
 	private PassiveScanThread parent = null;
+	private final ResponseScanCache scanCache = new ResponseScanCache(HttpHeader.CONTENT_TYPE);
 
 	/**
 	 * Prefix for internationalized messages used by this rule
@@ -57,6 +56,19 @@ public class CharsetMismatchScanner extends PluginPassiveScanner {
 
 	@Override
 	public void scanHttpResponseReceive(HttpMessage msg, int id, Source source) {
+		if (ParallelRuleExecutor.scanResponse(this, parent, msg, id, source)) {
+			return;
+		}
+		ResponseScanCache.Scan scan = scanCache.begin(msg);
+		if (scan == null) {
+			// Same content already scanned, with no findings
+			return;
+		}
+		scanResponse(msg, id, source);
+		scanCache.end(scan);
+	}
+
+	private void scanResponse(HttpMessage msg, int id, Source source) {
 		if (msg.getResponseBody().length() == 0) {
 			return;
 		}
@@ -77,7 +89,7 @@ public class CharsetMismatchScanner extends PluginPassiveScanner {
 			// Looking for <META HTTP-EQUIV="Content-Type" CONTENT="...">
 			// TODO: could there be more than single "Content-Type" meta per HTML?
 			
-			List<Element> metaElements = source.getAllElements(HTMLElementName.META);
+			List<Element> metaElements = HtmlElementIndex.get(source).getMetas();
 			if (metaElements != null) {
 				for (Element metaElement : metaElements) {
 					String httpEquiv = metaElement.getAttributeValue("http-equiv");
@@ -100,10 +112,8 @@ public class CharsetMismatchScanner extends PluginPassiveScanner {
 			// declaration tag (<?xml enconding=".."?>
 			//
 			// TODO: could there be more than one XML declaration tag for a single XML file?
-			List<StartTag> xmlDeclarationTags = source.getAllStartTags(
-					StartTagType.XML_DECLARATION);
-			if (xmlDeclarationTags.size() > 0) {
-				StartTag xmlDeclarationTag = xmlDeclarationTags.get(0);
+			StartTag xmlDeclarationTag = HtmlElementIndex.get(source).getXmlDeclaration();
+			if (xmlDeclarationTag != null) {
 				String encoding = xmlDeclarationTag.getAttributeValue("encoding");
 				
 				if (!headerCharset.equalsIgnoreCase(encoding)) {
@@ -161,7 +171,7 @@ public class CharsetMismatchScanner extends PluginPassiveScanner {
 				0,	// TODO WASC Id
 				msg);
 
-		parent.raiseAlert(id, alert);
+		ParallelRuleExecutor.raiseAlert(parent, id, alert);
 	}
 
 	private int getId() {
@@ -59,6 +59,9 @@ public class CookieLooselyScopedScanner extends PluginPassiveScanner {
 
 	@Override
 	public void scanHttpResponseReceive(HttpMessage msg, int id, Source source) {		
+		if (ParallelRuleExecutor.scanResponse(this, parent, msg, id, source)) {
+			return;
+		}
 		List<HttpCookie> cookies = msg.getResponseHeader().getHttpCookies();
 		
 		// name of a host from which the response has been sent from
@@ -147,7 +150,7 @@ public class CookieLooselyScopedScanner extends PluginPassiveScanner {
 				0,	// TODO WASC Id
 				msg);
 
-		parent.raiseAlert(id, alert);
+		ParallelRuleExecutor.raiseAlert(parent, id, alert);
 	}
 
 	private int getId() {
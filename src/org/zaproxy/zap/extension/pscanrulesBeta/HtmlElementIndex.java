@@ -0,0 +1,183 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.pscanrulesBeta;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.regex.Pattern;
+
+import net.htmlparser.jericho.Element;
+import net.htmlparser.jericho.HTMLElementName;
+import net.htmlparser.jericho.Source;
+import net.htmlparser.jericho.StartTag;
+import net.htmlparser.jericho.StartTagType;
+
+/**
+ * The elements of a response the rules are interested in, shared by all the rules that scan the same message, so
+ * that the tags are parsed and walked once per message rather than once per rule and element type.
+ * <p>
+ * The index is built with a full sequential parse of the source, which is also what allows the rules to get the
+ * parent of an element. The source is parsed only once, even if its index is built again.
+ * <p>
+ * Only the index of the last source is kept, and only while there's enough memory.
+ */
+final class HtmlElementIndex {
+
+	// Guarded by the class
+	private static SoftReference<HtmlElementIndex> last = new SoftReference<>(null);
+
+	// The sources already fully parsed, Source.wasFullSequentialParseCalled() is not public. Guarded by the class
+	private static final Map<Source, Boolean> parsedSources = new WeakHashMap<>();
+
+	private final Source source;
+
+	private final List<StartTag> startTags = new ArrayList<>();
+	private final List<StartTag> comments = new ArrayList<>();
+	private final List<Element> forms = new ArrayList<>();
+	private final List<Element> inputs = new ArrayList<>();
+	private final List<Element> metas = new ArrayList<>();
+	private final List<Element> scripts = new ArrayList<>();
+	private StartTag xmlDeclaration;
+
+	private HtmlElementIndex(Source source) {
+		this.source = source;
+
+		if (parsedSources.put(source, Boolean.TRUE) == null) {
+			source.fullSequentialParse();
+		}
+		for (StartTag tag : source.getAllStartTags()) {
+			StartTagType type = tag.getStartTagType();
+			if (type == StartTagType.NORMAL) {
+				startTags.add(tag);
+				String name = tag.getName();
+				if (HTMLElementName.FORM.equals(name)) {
+					forms.add(tag.getElement());
+				} else if (HTMLElementName.INPUT.equals(name)) {
+					inputs.add(tag.getElement());
+				} else if (HTMLElementName.META.equals(name)) {
+					metas.add(tag.getElement());
+				} else if (HTMLElementName.SCRIPT.equals(name)) {
+					scripts.add(tag.getElement());
+				}
+			} else if (type == StartTagType.COMMENT) {
+				comments.add(tag);
+			} else if (type == StartTagType.XML_DECLARATION && xmlDeclaration == null) {
+				xmlDeclaration = tag;
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of the given source, building it if not yet done.
+	 */
+	static synchronized HtmlElementIndex get(Source source) {
+		HtmlElementIndex index = last.get();
+		if (index == null || index.source != source) {
+			index = new HtmlElementIndex(source);
+			last = new SoftReference<>(index);
+		}
+		return index;
+	}
+
+	/**
+	 * Returns all the normal start tags (that is, not comments, declarations or processing instructions), in
+	 * document order.
+	 */
+	List<StartTag> getStartTags() {
+		return Collections.unmodifiableList(startTags);
+	}
+
+	/**
+	 * Returns the start tags of the normal elements with the given attribute, whose value fully matches the given
+	 * pattern.
+	 */
+	List<StartTag> getStartTags(String attributeName, Pattern valuePattern) {
+		List<StartTag> result = new ArrayList<>();
+		for (StartTag tag : startTags) {
+			String value = tag.getAttributeValue(attributeName);
+			if (value != null && valuePattern.matcher(value).matches()) {
+				result.add(tag);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the comment tags, in document order.
+	 */
+	List<StartTag> getComments() {
+		return Collections.unmodifiableList(comments);
+	}
+
+	List<Element> getForms() {
+		return Collections.unmodifiableList(forms);
+	}
+
+	List<Element> getInputs() {
+		return Collections.unmodifiableList(inputs);
+	}
+
+	/**
+	 * Returns the input elements which start within the given element, usually a form.
+	 */
+	List<Element> getInputs(Element container) {
+		List<Element> result = new ArrayList<>();
+		int end = container.getEnd();
+		for (int i = firstAtOrAfter(inputs, container.getBegin()); i < inputs.size(); i++) {
+			Element input = inputs.get(i);
+			if (input.getBegin() >= end) {
+				break;
+			}
+			result.add(input);
+		}
+		return result;
+	}
+
+	List<Element> getMetas() {
+		return Collections.unmodifiableList(metas);
+	}
+
+	List<Element> getScripts() {
+		return Collections.unmodifiableList(scripts);
+	}
+
+	/**
+	 * Returns the first XML declaration, or {@code null} if none.
+	 */
+	StartTag getXmlDeclaration() {
+		return xmlDeclaration;
+	}
+
+	private static int firstAtOrAfter(List<Element> elements, int position) {
+		int low = 0;
+		int high = elements.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (elements.get(mid).getBegin() < position) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
@@ -17,24 +17,24 @@
  */
 package org.zaproxy.zap.extension.pscanrulesBeta;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
-
 import net.htmlparser.jericho.Source;
 
-import org.apache.log4j.Logger;
 import org.parosproxy.paros.core.scanner.Alert;
-import org.parosproxy.paros.network.HttpBody;
+import org.parosproxy.paros.network.HttpHeader;
 import org.parosproxy.paros.network.HttpMessage;
 import org.zaproxy.zap.extension.pscan.PluginPassiveScanner;
 import org.zaproxy.zap.extension.pscan.PassiveScanThread;
 
 public class InformationDisclosureDebugErrors extends PluginPassiveScanner {
 
+	/**
+	 * The most characters of a response scanned, the debug messages are not expected after the first megabytes.
+	 */
+	private static final int MAX_BODY_LENGTH = 2 * 1024 * 1024;
+
 	private PassiveScanThread parent = null;
-	private static final String debugErrorFile = "xml/debug-error-messages.txt";
-	private static final Logger logger = Logger.getLogger(InformationDisclosureDebugErrors.class);
+	private final ResponseScanCache scanCache = new ResponseScanCache(HttpHeader.CONTENT_TYPE);
+	private final PatternDictionary debugErrors = PatternDictionary.get(PatternDictionary.DEBUG_ERROR_MESSAGES);
 	
 	@Override
 	public void scanHttpRequestSend(HttpMessage msg, int id) {
@@ -43,9 +43,22 @@ public class InformationDisclosureDebugErrors extends PluginPassiveScanner {
 
 	@Override
 	public void scanHttpResponseReceive(HttpMessage msg, int id, Source source) {
+		if (ParallelRuleExecutor.scanResponse(this, parent, msg, id, source)) {
+			return;
+		}
+		ResponseScanCache.Scan scan = scanCache.begin(msg, debugErrors.getSnapshot());
+		if (scan == null) {
+			// Same content already scanned, with no findings
+			return;
+		}
+		scanResponse(msg, id, source);
+		scanCache.end(scan);
+	}
+
+	private void scanResponse(HttpMessage msg, int id, Source source) {
 		if (msg.getResponseBody().length() > 0 && msg.getResponseHeader().isText()) {
 			String parameter;
-			if ((parameter = doesResponseContainsDebugErrorMessage(msg.getResponseBody())) != null) {
+			if ((parameter = doesResponseContainsDebugErrorMessage(ResponseBodyView.get(msg))) != null) {
 				this.raiseAlert(msg, id, parameter);
 			}
 		}
@@ -67,33 +80,11 @@ public class InformationDisclosureDebugErrors extends PluginPassiveScanner {
 		            13,	// WASC Id - Info leakage
 		            msg);
 	
-    	parent.raiseAlert(id, alert);
+    	ParallelRuleExecutor.raiseAlert(parent, id, alert);
 	}
 	
-	private String doesResponseContainsDebugErrorMessage (HttpBody body) {
-		String line = null;
-		BufferedReader reader = null;
-		try {
-			reader = new BufferedReader(new FileReader(debugErrorFile));
-			String sBody = body.toString().toLowerCase();
-			while ((line = reader.readLine()) != null) {
-				if (!line.startsWith("#") && sBody.contains(line.toLowerCase())) {
-					return line;
-				}
-			}
-		} catch (IOException e) {
-			logger.debug("Error on opening/reading debug error file. Error: " + e.getMessage());
-		} finally {
-			if (reader != null) {
-				try {
-					reader.close();			
-				}
-				catch (IOException e) {
-					logger.debug("Error on closing the file reader. Error: " + e.getMessage());
-				}
-			}
-		}
-		return null;
+	private String doesResponseContainsDebugErrorMessage (ResponseBodyView body) {
+		return debugErrors.getSnapshot().findIn(body.getText(MAX_BODY_LENGTH));
 	}
 	
 	@Override
@@ -17,15 +17,10 @@
  */
 package org.zaproxy.zap.extension.pscanrulesBeta;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
 import java.util.TreeSet;
-import java.util.regex.*;
 
 import net.htmlparser.jericho.Source;
 
-import org.apache.log4j.Logger;
 import org.parosproxy.paros.core.scanner.Alert;
 import org.parosproxy.paros.network.HtmlParameter;
 import org.parosproxy.paros.network.HttpMessage;
@@ -35,8 +30,8 @@ import org.zaproxy.zap.extension.pscan.PassiveScanThread;
 public class InformationDisclosureInURL extends PluginPassiveScanner {
 
 	private PassiveScanThread parent = null;
-	private static final String URLSensitiveInformationFile = "xml/URL-information-disclosure-messages.txt";
-	private static final Logger logger = Logger.getLogger(InformationDisclosureInURL.class);
+	private final PiiDetector piiDetector = new PiiDetector();
+	private final PatternDictionary sensitiveNames = PatternDictionary.get(PatternDictionary.URL_INFORMATION_DISCLOSURE_MESSAGES);
 
 	
 	@Override
@@ -79,35 +74,12 @@ public class InformationDisclosureInURL extends PluginPassiveScanner {
 		            13,	// WASC Id - Info leakage
 		            msg);
 	
-    	parent.raiseAlert(id, alert);
+    	ParallelRuleExecutor.raiseAlert(parent, id, alert);
 	}
 	
 	private boolean doesParamNameContainsSensitiveInformation (String paramName) {
-		String line = null;
-		BufferedReader reader = null;
-		try {
-			// TODO cache this :)
-			reader = new BufferedReader(new FileReader(URLSensitiveInformationFile));
-			paramName = paramName.toLowerCase();
-			while ((line = reader.readLine()) != null) {
-				// performed the check with contains to match if we have passwordApp or whatever as we are only checking against generic strings
-				if (!line.startsWith("#") && paramName.contains(line.toLowerCase())) {
-					return true;
-				}
-			}
-		} catch (IOException e) {
-			logger.debug("Error on opening/reading URL information disclosure file. Error: " + e.getMessage());
-		} finally {
-			if (reader != null) {
-				try {
-					reader.close();			
-				}
-				catch (IOException e) {
-					logger.debug("Error on closing the file reader. Error: " + e.getMessage());
-				}
-			}
-		}
-		return false;
+		// performed the check with contains to match if we have passwordApp or whatever as we are only checking against generic strings
+		return sensitiveNames.getSnapshot().isFoundIn(paramName);
 	}
 
 	@Override
@@ -125,30 +97,15 @@ public class InformationDisclosureInURL extends PluginPassiveScanner {
 	}
 	
 	private boolean isEmailAddress(String emailAddress) {
-		Pattern emailAddressPattern = Pattern.compile("\\b[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,4}\\b");
-		Matcher matcher = emailAddressPattern.matcher(emailAddress);
-		if (matcher.find()) {
-			return true;
-		}
-		return false;
+		return piiDetector.containsEmailAddress(emailAddress);
 	}
 	
 	private boolean isCreditCard(String creditCard) {
-		Pattern creditCardPattern = Pattern.compile("\\b(?:4[0-9]{12}(?:[0-9]{3})?|5[1-5][0-9]{14}|6(?:011|5[0-9][0-9])[0-9]{12}|3[47][0-9]{13}|3(?:0[0-5]|[68][0-9])[0-9]{11}|(?:2131|1800|35\\d{3})\\d{11})\\b");
-		Matcher matcher = creditCardPattern.matcher(creditCard);
-		if (matcher.find()) {
-			return true;
-		}
-		return false;
+		return piiDetector.containsCreditCard(creditCard);
 	}
 	
 	private boolean isUsSSN(String usSSN) {
-		Pattern usSSNPattern = Pattern.compile("\\b[0-9]{3}-[0-9]{2}-[0-9]{4}\\b");
-		Matcher matcher = usSSNPattern.matcher(usSSN);
-		if (matcher.find()){
-			return true;
-		}
-		return false;
+		return piiDetector.containsUsSsn(usSSN);
 	}
 	
 	private static void testUrl (String url) {
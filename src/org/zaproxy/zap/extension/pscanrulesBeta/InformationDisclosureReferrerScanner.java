@@ -17,12 +17,7 @@
  */
 package org.zaproxy.zap.extension.pscanrulesBeta;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
 import java.util.Vector;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import net.htmlparser.jericho.Source;
 
@@ -38,7 +33,8 @@ import org.zaproxy.zap.extension.pscan.PluginPassiveScanner;
 public class InformationDisclosureReferrerScanner extends PluginPassiveScanner {
 
 	private PassiveScanThread parent = null;
-	private static final String URLSensitiveInformationFile = "xml/URL-information-disclosure-messages.txt";
+	private final PiiDetector piiDetector = new PiiDetector();
+	private final PatternDictionary sensitiveNames = PatternDictionary.get(PatternDictionary.URL_INFORMATION_DISCLOSURE_MESSAGES);
 	private static final Logger logger = Logger.getLogger(InformationDisclosureReferrerScanner.class);
 	
 	@Override
@@ -96,33 +92,11 @@ public class InformationDisclosureReferrerScanner extends PluginPassiveScanner {
 		            13,	// WASC Id - Info leakage
 		            msg);
 	
-    	parent.raiseAlert(id, alert);
+    	ParallelRuleExecutor.raiseAlert(parent, id, alert);
 	}
 	
 	private String doesURLContainsSensitiveInformation (String URL) {
-		String line = null;
-		BufferedReader reader = null;
-		try {
-			reader = new BufferedReader(new FileReader(URLSensitiveInformationFile));
-			URL = URL.toLowerCase();
-			while ((line = reader.readLine()) != null) {
-				if (!line.startsWith("#") && URL.contains(line.toLowerCase())) {
-					return line;
-				}
-			}
-		} catch (IOException e) {
-			logger.debug("Error on opening/reading URL information disclosure file. Error: " + e.getMessage());
-		} finally {
-			if (reader != null) {
-				try{
-					reader.close();
-				} catch (IOException e) {
-					logger.debug("Error on closing the file reader. Error: " + e.getMessage());
-				}
-			}
-		}
-			
-		return null;
+		return sensitiveNames.getSnapshot().findIn(URL);
 	}
 
 	@Override
@@ -145,29 +119,14 @@ public class InformationDisclosureReferrerScanner extends PluginPassiveScanner {
 	}
 	
 	private boolean isEmailAddress(String emailAddress) {
-		Pattern emailAddressPattern = Pattern.compile("\\b[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,4}\\b");
-		Matcher matcher = emailAddressPattern.matcher(emailAddress);
-		if (matcher.find()) {
-			return true;
-		}
-		return false;
+		return piiDetector.containsEmailAddress(emailAddress);
 	}
 	
 	private boolean isCreditCard(String creditCard) {
-		Pattern creditCardPattern = Pattern.compile("\\b(?:4[0-9]{12}(?:[0-9]{3})?|5[1-5][0-9]{14}|6(?:011|5[0-9][0-9])[0-9]{12}|3[47][0-9]{13}|3(?:0[0-5]|[68][0-9])[0-9]{11}|(?:2131|1800|35\\d{3})\\d{11})\\b");
-		Matcher matcher = creditCardPattern.matcher(creditCard);
-		if (matcher.find()) {
-			return true;
-		}
-		return false;
+		return piiDetector.containsCreditCard(creditCard);
 	}
 	
 	private boolean isUsSSN(String usSSN) {
-		Pattern usSSNPattern = Pattern.compile("\\b[0-9]{3}-[0-9]{2}-[0-9]{4}\\b");
-		Matcher matcher = usSSNPattern.matcher(usSSN);
-		if (matcher.find()){
-			return true;
-		}
-		return false;
+		return piiDetector.containsUsSsn(usSSN);
 	}
 }
@@ -17,33 +17,37 @@
  */
 package org.zaproxy.zap.extension.pscanrulesBeta;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import net.htmlparser.jericho.Element;
-import net.htmlparser.jericho.HTMLElementName;
 import net.htmlparser.jericho.Source;
-import net.htmlparser.jericho.StartTagType;
-import net.htmlparser.jericho.Tag;
+import net.htmlparser.jericho.StartTag;
 
 import org.apache.log4j.Logger;
 import org.parosproxy.paros.core.scanner.Alert;
+import org.parosproxy.paros.network.HttpHeader;
 import org.parosproxy.paros.network.HttpMessage;
 import org.zaproxy.zap.extension.pscan.PassiveScanThread;
 import org.zaproxy.zap.extension.pscan.PluginPassiveScanner;
 
 public class InformationDisclosureSuspiciousComments extends PluginPassiveScanner {
 
+	/**
+	 * The most characters of a JavaScript response scanned.
+	 */
+	private static final int MAX_BODY_LENGTH = 5 * 1024 * 1024;
+
 	private PassiveScanThread parent = null;
-	private static final String databaseErrorFile = "xml/suspicious-comments.txt";
+	private final ResponseScanCache scanCache = new ResponseScanCache(HttpHeader.CONTENT_TYPE);
 	private static final Logger logger = Logger.getLogger(InformationDisclosureSuspiciousComments.class);
+
+	private final PatternDictionary suspiciousWords = PatternDictionary.get(PatternDictionary.SUSPICIOUS_COMMENTS);
 	
-	private List<Pattern> patterns = null;
+	// The words of the snapshot compiled into a single pattern, replaced when the snapshot changes
+	private PatternDictionary.Snapshot patternSnapshot = null;
+	private Pattern pattern = null;
 	
 	@Override
 	public void scanHttpRequestSend(HttpMessage msg, int id) {
@@ -51,49 +55,56 @@ public class InformationDisclosureSuspiciousComments extends PluginPassiveScanne
 
 	@Override
 	public void scanHttpResponseReceive(HttpMessage msg, int id, Source source) {
+		if (ParallelRuleExecutor.scanResponse(this, parent, msg, id, source)) {
+			return;
+		}
+		ResponseScanCache.Scan scan = scanCache.begin(msg, suspiciousWords.getSnapshot());
+		if (scan == null) {
+			// Same content already scanned, with no findings
+			return;
+		}
+		scanResponse(msg, id, source);
+		scanCache.end(scan);
+	}
+
+	private void scanResponse(HttpMessage msg, int id, Source source) {
 		if (msg.getResponseBody().length() > 0 && msg.getResponseHeader().isText()) {
-			StringBuilder todoComments = new StringBuilder();
+			final StringBuilder todoComments = new StringBuilder();
+			Pattern pattern = this.getPattern();
+			if (pattern == null) {
+				return;
+			}
 			
 			if (msg.getResponseHeader().isJavaScript()) {
-				// Just treat as text
-				String[] lines = msg.getResponseBody().toString().split("\n");
-				for (String line : lines) {
-					for (Pattern pattern : this.getPatterns()) {
-						if (pattern.matcher(line).find()) {
-							todoComments.append(line);
-							todoComments.append("\n");
-							break;	// Only need to record this line once
-						}
+				// Just treat as text, each line recorded once
+				MatchingLineScanner.scan(pattern, ResponseBodyView.get(msg).getText(MAX_BODY_LENGTH), new MatchingLineScanner.LineListener() {
+					
+					@Override
+					public void lineMatched(CharSequence text, int lineStart, int lineEnd, int matchStart, int matchEnd) {
+						todoComments.append(text, lineStart, lineEnd);
+						todoComments.append("\n");
 					}
-				}
+				});
 			} else {
 				// Can use the parser
+				HtmlElementIndex elementIndex = HtmlElementIndex.get(source);
 			
 				// Check the comments
-				List<Tag> tags = source.getAllTags(StartTagType.COMMENT);
-				for (Tag tag : tags) {
+				List<StartTag> tags = elementIndex.getComments();
+				for (StartTag tag : tags) {
 					String tagStr = tag.toString();
-					for (Pattern pattern : this.getPatterns()) {
-						if (pattern.matcher(tagStr).find()) {
-							todoComments.append(tagStr);
-							todoComments.append("\n");
-							break;	// Only need to record this comment once
-						}
+					if (pattern.matcher(tagStr).find()) {
+						todoComments.append(tagStr);
+						todoComments.append("\n");
 					}
 				}
 				// Check the scripts
-				Element el;
-				int offset = 0;
-				while ((el = source.getNextElement(offset, HTMLElementName.SCRIPT)) != null) {
+				for (Element el : elementIndex.getScripts()) {
 					String elStr = el.toString();
-					for (Pattern pattern : this.getPatterns()) {
-						if (pattern.matcher(elStr).find()) {
-							todoComments.append(elStr);
-							todoComments.append("\n");
-							break;	// Only need to record this script once
-						}
+					if (pattern.matcher(elStr).find()) {
+						todoComments.append(elStr);
+						todoComments.append("\n");
 					}
-					offset = el.getEnd();
 				}
 			}
 			if (todoComments.length() > 0) {
@@ -118,36 +129,49 @@ public class InformationDisclosureSuspiciousComments extends PluginPassiveScanne
 		            13,	// WASC Id - Info leakage
 		            msg);
 	
-    	parent.raiseAlert(id, alert);
+    	ParallelRuleExecutor.raiseAlert(parent, id, alert);
 	}
 	
-	private List<Pattern> getPatterns() {
-		if (patterns == null) {
-			patterns = new ArrayList<>();
-			String line = null;
-			File f = new File(databaseErrorFile);
-			BufferedReader reader = null;
-			try {
-				reader = new BufferedReader(new FileReader(f));
-				while ((line = reader.readLine()) != null) {
-					if (!line.startsWith("#") && line.length() > 0) {
-						patterns.add(Pattern.compile("\\b" + line + "\\b", Pattern.CASE_INSENSITIVE));
-					}
-				}
-			} catch (IOException e) {
-				logger.error("Error on opening/reading database error file. File: " + f.getAbsolutePath() + " Error: " + e.getMessage());
-			} finally {
-				if (reader != null) {
-					try {
-						reader.close();			
-					}
-					catch (IOException e) {
-						logger.debug("Error on closing the file reader. Error: " + e.getMessage());
-					}
-				}
+	/**
+	 * Returns the pattern that matches any of the suspicious words, as a whole word, ignoring the case, or
+	 * {@code null} if there are no words.
+	 */
+	private synchronized Pattern getPattern() {
+		PatternDictionary.Snapshot snapshot = suspiciousWords.getSnapshot();
+		if (snapshot != patternSnapshot) {
+			patternSnapshot = snapshot;
+			pattern = compile(snapshot.getEntries());
+		}
+		return pattern;
+	}
+	
+	/**
+	 * Compiles the words into a single alternation, equivalent to matching each "\bWORD\b" on its own. The words
+	 * which are not valid regular expressions are matched literally.
+	 */
+	private static Pattern compile(List<String> words) {
+		if (words.isEmpty()) {
+			return null;
+		}
+		StringBuilder regex = new StringBuilder("\\b(?:");
+		for (int i = 0; i < words.size(); i++) {
+			if (i > 0) {
+				regex.append('|');
 			}
+			regex.append(toRegex(words.get(i)));
+		}
+		regex.append(")\\b");
+		return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+	}
+	
+	private static String toRegex(String word) {
+		try {
+			Pattern.compile(word);
+			return word;
+		} catch (PatternSyntaxException e) {
+			logger.warn("Invalid suspicious comment pattern, matching it literally: " + word);
+			return Pattern.quote(word);
 		}
-		return patterns;
 	}
 
 	@Override
@@ -185,7 +185,7 @@ public class InsecureAuthenticationScan extends PluginPassiveScanner {
 							1,	// WASC Id - Insufficient authentication
 							msg);
 					//raise the alert
-					parent.raiseAlert(id, alert);
+					ParallelRuleExecutor.raiseAlert(parent, id, alert);
 
 					//and log it, without internationalising it.
 					log.info("Authentication Credentials were captured. ["+method+"] ["+uri+"] uses insecure authentication mechanism ["+authMechanism+"], revealing username ["+username+"] and password/additional information ["+((digestInfo!=null)?digestInfo:password)+"]");
@@ -228,6 +228,9 @@ public class InsecureAuthenticationScan extends PluginPassiveScanner {
 
 	@Override
 	public void scanHttpResponseReceive(HttpMessage msg, int id, Source source) {
+		if (ParallelRuleExecutor.scanResponse(this, parent, msg, id, source)) {
+			return;
+		}
 		if (msg.getRequestHeader().isSecure()) {
 			// If SSL is used then the use of 'weak' authentication methods isnt really an issue	
 			return;
@@ -248,7 +251,7 @@ public class InsecureAuthenticationScan extends PluginPassiveScanner {
 							326,	// TODO CWE Id
 							0,	// TODO WASC Id
 							msg);
-					parent.raiseAlert(id, alert);
+					ParallelRuleExecutor.raiseAlert(parent, id, alert);
 				}
 			}
 		}
@@ -17,19 +17,18 @@
  */
 package org.zaproxy.zap.extension.pscanrulesBeta;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.List;
-import java.util.zip.GZIPInputStream;
 
 import net.htmlparser.jericho.Element;
-import net.htmlparser.jericho.HTMLElementName;
 import net.htmlparser.jericho.Source;
 
 import org.parosproxy.paros.Constant;
 import org.parosproxy.paros.core.scanner.Alert;
-import org.parosproxy.paros.extension.encoder.Base64;
+import org.parosproxy.paros.network.HttpHeader;
 import org.parosproxy.paros.network.HttpMessage;
 import org.zaproxy.zap.extension.pscan.PassiveScanThread;
 import org.zaproxy.zap.extension.pscan.PluginPassiveScanner;
@@ -64,9 +63,18 @@ import org.zaproxy.zap.extension.pscan.PluginPassiveScanner;
 public class InsecureJSFViewStatePassiveScanner extends PluginPassiveScanner {
 
 	private PassiveScanThread parent = null;
+	private final ResponseScanCache scanCache = new ResponseScanCache(HttpHeader.CONTENT_TYPE);
 
 	private static final String MESSAGE_PREFIX = "pscanbeta.insecurejsfviewstate.";
 
+	/**
+	 * The bytes that show that a decoded ViewState is insecure, same as checked by
+	 * {@link #isRawViewStateSecure(String)}.
+	 */
+	private static final byte[] INSECURE_VIEWSTATE_MARKER = "java".getBytes(StandardCharsets.US_ASCII);
+
+	private final ViewstateDecoder decoder = new ViewstateDecoder();
+
 	@Override
 	public void setParent(PassiveScanThread parent) {
 		this.parent = parent;
@@ -84,10 +92,23 @@ public class InsecureJSFViewStatePassiveScanner extends PluginPassiveScanner {
 
 	@Override
 	public void scanHttpResponseReceive(HttpMessage msg, int id, Source source) {
+		if (ParallelRuleExecutor.scanResponse(this, parent, msg, id, source)) {
+			return;
+		}
+		ResponseScanCache.Scan scan = scanCache.begin(msg);
+		if (scan == null) {
+			// Same content already scanned, with no findings
+			return;
+		}
+		scanResponse(msg, id, source);
+		scanCache.end(scan);
+	}
+
+	private void scanResponse(HttpMessage msg, int id, Source source) {
 		if (msg.getResponseBody().length() > 0
 				&& msg.getResponseHeader().isText()) {
-			List<Element> sourceElements = source
-					.getAllElements(HTMLElementName.INPUT);
+			List<Element> sourceElements = HtmlElementIndex.get(source)
+					.getInputs();
 			if (sourceElements != null) {
 				for (Element sourceElement : sourceElements) {
 
@@ -118,8 +139,8 @@ public class InsecureJSFViewStatePassiveScanner extends PluginPassiveScanner {
 
 						// If the ViewState is not secured cryptographic
 						// protections then raise an alert.
+						if (!isViewStateSecure(val)) {
 							raiseAlert(msg, id, src);
-							if (!isViewStateSecure(src, msg.getRequestBody().getCharset())) {
 						}
 					}
 				}
@@ -131,12 +152,11 @@ public class InsecureJSFViewStatePassiveScanner extends PluginPassiveScanner {
 	 * Checks whether the specified viewState is secure or possibly not
 	 * 
 	 * @param viewState view state string
-	 * @param charset viewState string encoding
 	 * @return {@code true} if {@code viewState} is cryptographically secure, 
 	 * and {@code false} otherwise (there might be false positives and false
 	 * negatives)
 	 */
-	private boolean isViewStateSecure(String viewState, String charset) {
+	private boolean isViewStateSecure(String viewState) {
 		if (viewState == null || viewState.equals("")) {
 			return true;
 		}
@@ -153,47 +173,19 @@ public class InsecureJSFViewStatePassiveScanner extends PluginPassiveScanner {
 		// support for these.
 		//
 		// TODO: Could other compression forms be used?		
+		//
+		// The decoded (and inflated) ViewState is scanned as it's read, without
+		// being copied in full, and only up to the maximum length of the decoder.
 
-		byte[] viewStateDecodeBytes;
-		try {
-			viewStateDecodeBytes = Base64.decode(viewState, Base64.GZIP);
-		} catch (IOException e) {
-			// ViewState might be unencoded which is theoretically possible.
-			return isRawViewStateSecure(viewState);
-		}
-		
-		String viewStateDecoded = new String(viewStateDecodeBytes);
-
-		// First attempt to treat the decoded ViewState as an uncompressed
-		// string.
-		if (!isRawViewStateSecure(viewStateDecoded)) {
-			// ViewState is insecure
-			return false;
-		}
-
-		// If the above didn't return, then continue on trying to GZIP deflate
-		// the byte array.
-		try {
-			GZIPInputStream decompress = new GZIPInputStream(
-					new ByteArrayInputStream(viewStateDecoded.getBytes()));
-			ByteArrayOutputStream out = new ByteArrayOutputStream();
-			byte[] buf = new byte[4096];
-			int len;
-			while ((len = decompress.read(buf)) > 0) {
-				out.write(buf, 0, len);
-			}
-
+		try (InputStream in = decoder.open(Collections.singletonList(viewState), true)) {
 			// /////////////////////////////
-			// Step 3
 			// Try to determine if ViewState is encrypted or contains clear text
 			// strings.
-
-
-			return isRawViewStateSecure(out.toString());
-		} catch (IOException ex) {
+			return !ViewstateDecoder.contains(in, INSECURE_VIEWSTATE_MARKER);
+		} catch (IOException e) {
+			// ViewState might be unencoded which is theoretically possible.
+			return isRawViewStateSecure(viewState);
 		}
-
-		return true;
 	}
 
 	private boolean isRawViewStateSecure(String viewState) {
@@ -229,7 +221,7 @@ public class InsecureJSFViewStatePassiveScanner extends PluginPassiveScanner {
 				0,	// TODO WASC Id
 				msg);
 
-		parent.raiseAlert(id, alert);
+		ParallelRuleExecutor.raiseAlert(parent, id, alert);
 	}
 
 	@Override
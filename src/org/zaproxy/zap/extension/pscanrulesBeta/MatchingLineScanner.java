@@ -0,0 +1,91 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.pscanrulesBeta;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the lines of a text that contain a match of a pattern, in a single pass over the text.
+ * <p>
+ * The text is not split into lines, the pattern is searched in the whole text and, for each match, the bounds of the
+ * line are found around it, the search then continues after the line (each line is reported once). The lines are
+ * reported as offsets into the text, so large texts (e.g. minified JavaScript) are scanned without creating a string
+ * per line.
+ */
+final class MatchingLineScanner {
+
+	/**
+	 * Notified of the lines that match.
+	 */
+	interface LineListener {
+
+		/**
+		 * Called for each line that contains a match, in the order of the text.
+		 *
+		 * @param text the text scanned
+		 * @param lineStart the offset of the start of the line
+		 * @param lineEnd the offset of the end of the line, exclusive, the line break not included
+		 * @param matchStart the offset of the start of the first match in the line
+		 * @param matchEnd the offset of the end of the first match in the line, exclusive
+		 */
+		void lineMatched(CharSequence text, int lineStart, int lineEnd, int matchStart, int matchEnd);
+	}
+
+	private MatchingLineScanner() {
+	}
+
+	/**
+	 * Scans the given text for the lines that contain a match of the pattern, returns the number of lines found.
+	 */
+	static int scan(Pattern pattern, CharSequence text, LineListener listener) {
+		Matcher matcher = pattern.matcher(text);
+		// Let the boundaries (e.g. \b) see the text before the region
+		matcher.useTransparentBounds(true);
+		int length = text.length();
+		int lines = 0;
+		while (matcher.find()) {
+			int lineStart = lineStart(text, matcher.start());
+			int lineEnd = lineEnd(text, matcher.end());
+			listener.lineMatched(text, lineStart, lineEnd, matcher.start(), matcher.end());
+			lines++;
+			if (lineEnd >= length) {
+				break;
+			}
+			matcher.region(lineEnd + 1, length);
+		}
+		return lines;
+	}
+
+	private static int lineStart(CharSequence text, int offset) {
+		int i = offset;
+		while (i > 0 && text.charAt(i - 1) != '\n') {
+			i--;
+		}
+		return i;
+	}
+
+	private static int lineEnd(CharSequence text, int offset) {
+		int length = text.length();
+		int i = offset;
+		while (i < length && text.charAt(i) != '\n') {
+			i++;
+		}
+		return i;
+	}
+}
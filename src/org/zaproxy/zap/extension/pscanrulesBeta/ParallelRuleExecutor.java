@@ -0,0 +1,272 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.pscanrulesBeta;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.htmlparser.jericho.Source;
+
+import org.apache.log4j.Logger;
+import org.parosproxy.paros.core.scanner.Alert;
+import org.parosproxy.paros.model.HistoryReference;
+import org.parosproxy.paros.network.HttpMessage;
+import org.zaproxy.zap.extension.pscan.PassiveScanThread;
+import org.zaproxy.zap.extension.pscan.PluginPassiveScanner;
+
+/**
+ * Runs the response scans of the rules of this add-on concurrently, one message at a time.
+ * <p>
+ * The passive scan thread calls the rules one after the other. When enabled, with the system property
+ * {@value #PARALLEL_PROPERTY} set to {@code true}, the first call for a message runs on a bounded pool the rules the
+ * passive scan thread called for the previous message of the same history type, and waits for them, the following
+ * calls for the same message then return straight away, while the rules not run on the pool scan it themselves. The
+ * alerts raised while running on the pool are held back and raised, on the passive scan thread, in the order the
+ * rules were called by the passive scan thread, so the alerts of the rules of this add-on are the same, and in the
+ * same order while the rules called don't change, as when run sequentially. The order is deterministic only among
+ * the rules of this add-on: all the alerts of the pool are raised during the call of the first rule, so before the
+ * alerts of the rules of other add-ons, or of the core, that the passive scan thread calls in between.
+ * <p>
+ * Only the rules the passive scan thread actually called, and still enabled, are run, so the checks it does before
+ * calling a rule (for example, whether the message is scanned at all) also apply to the parallel execution, as long
+ * as they give the same outcome for the messages of the same history type.
+ * The first message of each history type is always scanned sequentially. A rule never runs concurrently with itself.
+ */
+final class ParallelRuleExecutor {
+
+	/**
+	 * The system property that enables the parallel execution of the rules.
+	 */
+	static final String PARALLEL_PROPERTY = "zap.pscanrulesBeta.parallel";
+
+	private static final Logger logger = Logger.getLogger(ParallelRuleExecutor.class);
+
+	private static final boolean PARALLEL = Boolean.getBoolean(PARALLEL_PROPERTY);
+
+	private static final int THREADS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+	// The rules called for the last message of each history type, in the order called, guarded by itself
+	private static final Map<Integer, List<PluginPassiveScanner>> calledRules = new HashMap<>();
+
+	// The message being scanned by the passive scan thread
+	private static final ThreadLocal<Batch> currentBatch = new ThreadLocal<>();
+
+	// The alerts held back by the rule running on the pool thread, null if not running on the pool
+	private static final ThreadLocal<List<PendingAlert>> pendingAlerts = new ThreadLocal<>();
+
+	private static ExecutorService executor;
+
+	private ParallelRuleExecutor() {
+	}
+
+	/**
+	 * Scans the response with the rules called for the previous message of the same history type, if not yet done
+	 * for the message and the parallel execution is enabled.
+	 * 
+	 * @return {@code true} if the given rule already scanned the response, {@code false} if the rule should scan it
+	 *         itself.
+	 */
+	static boolean scanResponse(PluginPassiveScanner rule, PassiveScanThread parent, HttpMessage msg, int id,
+			Source source) {
+		if (!PARALLEL || pendingAlerts.get() != null) {
+			return false;
+		}
+
+		Batch batch = currentBatch.get();
+		if (batch != null && batch.isFor(msg, id)) {
+			batch.called(rule);
+			return !batch.scannedRules.add(rule);
+		}
+
+		List<PluginPassiveScanner> batchRules = new ArrayList<>();
+		int historyType = getHistoryType(msg);
+		synchronized (calledRules) {
+			if (batch != null) {
+				calledRules.put(batch.historyType, batch.calledRules);
+			}
+			List<PluginPassiveScanner> previouslyCalled = calledRules.get(historyType);
+			if (previouslyCalled != null) {
+				for (PluginPassiveScanner knownRule : previouslyCalled) {
+					if (knownRule.isEnabled()) {
+						batchRules.add(knownRule);
+					}
+				}
+			}
+		}
+
+		batch = new Batch(msg, id, historyType);
+		currentBatch.set(batch);
+		batch.called(rule);
+
+		if (batchRules.size() < 2 || !batchRules.contains(rule)) {
+			batch.scannedRules.add(rule);
+			return false;
+		}
+
+		// Parse the source before sharing it, the rules only read it afterwards
+		HtmlElementIndex.get(source);
+		// Jericho builds the element hierarchy, used to get the parent of an element, lazily and without
+		// synchronisation, so build it now. The other lazy state of the source (the tags, already all parsed, and the
+		// elements and attributes of each tag) are idempotent caches of the same values.
+		source.getChildElements();
+
+		List<Future<List<PendingAlert>>> results = new ArrayList<>(batchRules.size());
+		for (PluginPassiveScanner batchRule : batchRules) {
+			batch.scannedRules.add(batchRule);
+			batchRule.setParent(parent);
+			results.add(getExecutor().submit(new RuleScan(batchRule, msg, id, source)));
+		}
+
+		for (int i = 0; i < results.size(); i++) {
+			try {
+				for (PendingAlert pending : results.get(i).get()) {
+					raiseAlert(parent, pending.id, pending.alert);
+				}
+			} catch (ExecutionException e) {
+				logger.error("Rule " + batchRules.get(i).getName() + " failed: " + e.getCause().getMessage(),
+						e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return true;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Raises the given alert, or holds it back if the rule is running on the pool. Alerts of findings already
+	 * raised are dropped, see {@link AlertDeduplicator}.
+	 */
+	static void raiseAlert(PassiveScanThread parent, int id, Alert alert) {
+		ResponseScanCache.alertRaised();
+		List<PendingAlert> pending = pendingAlerts.get();
+		if (pending != null) {
+			pending.add(new PendingAlert(id, alert));
+			return;
+		}
+		if (AlertDeduplicator.getInstance().isDuplicate(alert)) {
+			return;
+		}
+		parent.raiseAlert(id, alert);
+	}
+
+	private static int getHistoryType(HttpMessage msg) {
+		HistoryReference historyRef = msg.getHistoryRef();
+		return historyRef != null ? historyRef.getHistoryType() : -1;
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+						private final AtomicInteger threadCount = new AtomicInteger();
+
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "ZAP-pscanrulesBeta-" + threadCount.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+		}
+		return executor;
+	}
+
+	private static class Batch {
+
+		// Weak, the batch is kept until the next message is scanned
+		private final WeakReference<HttpMessage> msg;
+		private final int id;
+		private final int historyType;
+		private final List<PluginPassiveScanner> calledRules = new ArrayList<>();
+		private final Set<PluginPassiveScanner> scannedRules = Collections
+				.newSetFromMap(new IdentityHashMap<PluginPassiveScanner, Boolean>());
+
+		Batch(HttpMessage msg, int id, int historyType) {
+			this.msg = new WeakReference<>(msg);
+			this.id = id;
+			this.historyType = historyType;
+		}
+
+		void called(PluginPassiveScanner rule) {
+			calledRules.add(rule);
+		}
+
+		boolean isFor(HttpMessage msg, int id) {
+			return this.msg.get() == msg && this.id == id;
+		}
+	}
+
+	private static class RuleScan implements Callable<List<PendingAlert>> {
+
+		private final PluginPassiveScanner rule;
+		private final HttpMessage msg;
+		private final int id;
+		private final Source source;
+
+		RuleScan(PluginPassiveScanner rule, HttpMessage msg, int id, Source source) {
+			this.rule = rule;
+			this.msg = msg;
+			this.id = id;
+			this.source = source;
+		}
+
+		@Override
+		public List<PendingAlert> call() {
+			List<PendingAlert> pending = new ArrayList<>();
+			pendingAlerts.set(pending);
+			try {
+				synchronized (rule) {
+					rule.scanHttpResponseReceive(msg, id, source);
+				}
+			} finally {
+				pendingAlerts.remove();
+			}
+			return pending;
+		}
+	}
+
+	private static class PendingAlert {
+
+		private final int id;
+		private final Alert alert;
+
+		PendingAlert(int id, Alert alert) {
+			this.id = id;
+			this.alert = alert;
+		}
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.pscanrulesBeta;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A list of strings read from a file, for example, the debug error messages, shared by all the rules that use it.
+ * <p>
+ * The file is read once and kept in memory as an immutable {@link Snapshot}, with the entries compiled into an
+ * {@link AhoCorasickMatcher}, so the rules don't read the file for each message and find all the entries in a single
+ * pass over the text. The file is checked for changes at most every
+ * {@value #RELOAD_CHECK_INTERVAL_MS} milliseconds, if changed it's read again and the new snapshot replaces the old
+ * one, the rules still using the old one are not affected.
+ * <p>
+ * Lines starting with {@code #} and empty lines are ignored.
+ */
+final class PatternDictionary {
+
+	static final String DEBUG_ERROR_MESSAGES = "xml/debug-error-messages.txt";
+	static final String URL_INFORMATION_DISCLOSURE_MESSAGES = "xml/URL-information-disclosure-messages.txt";
+	static final String SUSPICIOUS_COMMENTS = "xml/suspicious-comments.txt";
+
+	private static final long RELOAD_CHECK_INTERVAL_MS = 5000;
+
+	private static final Logger logger = Logger.getLogger(PatternDictionary.class);
+
+	private static final ConcurrentMap<String, PatternDictionary> dictionaries = new ConcurrentHashMap<>();
+
+	private final File file;
+	private volatile Snapshot snapshot;
+	private volatile long nextCheck;
+
+	// Guarded by this
+	private long lastModified;
+	private long length;
+
+	private PatternDictionary(String fileName) {
+		this.file = new File(fileName);
+	}
+
+	/**
+	 * Returns the dictionary of the given file, the same for all the rules.
+	 */
+	static PatternDictionary get(String fileName) {
+		PatternDictionary dictionary = dictionaries.get(fileName);
+		if (dictionary == null) {
+			dictionary = new PatternDictionary(fileName);
+			PatternDictionary previous = dictionaries.putIfAbsent(fileName, dictionary);
+			if (previous != null) {
+				dictionary = previous;
+			}
+		}
+		return dictionary;
+	}
+
+	/**
+	 * Returns the current entries of the dictionary, reading the file if not yet read or if changed.
+	 */
+	Snapshot getSnapshot() {
+		long now = System.currentTimeMillis();
+		if (now >= nextCheck) {
+			reloadIfChanged(now);
+		}
+		return snapshot;
+	}
+
+	private synchronized void reloadIfChanged(long now) {
+		if (now < nextCheck) {
+			return;
+		}
+		nextCheck = now + RELOAD_CHECK_INTERVAL_MS;
+		long modified = file.lastModified();
+		long size = file.length();
+		if (snapshot != null && modified == lastModified && size == length) {
+			return;
+		}
+		lastModified = modified;
+		length = size;
+		snapshot = new Snapshot(read());
+	}
+
+	private List<String> read() {
+		List<String> entries = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.length() > 0 && !line.startsWith("#")) {
+					entries.add(line);
+				}
+			}
+		} catch (IOException e) {
+			logger.debug("Error on opening/reading " + file + ". Error: " + e.getMessage());
+		}
+		return entries;
+	}
+
+	/**
+	 * The entries of the dictionary at a given time, never changed.
+	 */
+	static final class Snapshot {
+
+		private final List<String> entries;
+		private final AhoCorasickMatcher matcher;
+
+		private Snapshot(List<String> entries) {
+			this.entries = Collections.unmodifiableList(entries);
+			this.matcher = new AhoCorasickMatcher(entries);
+		}
+
+		/**
+		 * Returns the entries, in the order of the file.
+		 */
+		List<String> getEntries() {
+			return entries;
+		}
+
+		/**
+		 * Returns the first entry, in the order of the file, contained in the given text, ignoring the case, or
+		 * {@code null} if none.
+		 */
+		String findIn(CharSequence text) {
+			int index = matcher.findFirstPattern(text);
+			return index != -1 ? entries.get(index) : null;
+		}
+
+		/**
+		 * Tells whether or not the given text contains any of the entries, ignoring the case.
+		 */
+		boolean isFoundIn(CharSequence text) {
+			return matcher.matches(text);
+		}
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.pscanrulesBeta;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Detects personally identifiable information (e.g. email addresses, credit card numbers) in texts, for example, the
+ * parameters of a URL.
+ * <p>
+ * The patterns are compiled once and shared, each detector only keeps its own matchers, which are reset for each
+ * text. The detectors are not thread safe, each rule should have its own.
+ * <p>
+ * The credit card numbers must also pass the Luhn check, most random numbers of the right length and prefix don't.
+ */
+final class PiiDetector {
+
+	private static final Pattern EMAIL_ADDRESS = Pattern.compile("\\b[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,4}\\b");
+
+	private static final Pattern CREDIT_CARD = Pattern.compile("\\b(?:4[0-9]{12}(?:[0-9]{3})?|5[1-5][0-9]{14}|6(?:011|5[0-9][0-9])[0-9]{12}|3[47][0-9]{13}|3(?:0[0-5]|[68][0-9])[0-9]{11}|(?:2131|1800|35\\d{3})\\d{11})\\b");
+
+	private static final Pattern US_SSN = Pattern.compile("\\b[0-9]{3}-[0-9]{2}-[0-9]{4}\\b");
+
+	private final Matcher emailAddressMatcher = EMAIL_ADDRESS.matcher("");
+	private final Matcher creditCardMatcher = CREDIT_CARD.matcher("");
+	private final Matcher usSsnMatcher = US_SSN.matcher("");
+
+	boolean containsEmailAddress(CharSequence text) {
+		return emailAddressMatcher.reset(text).find();
+	}
+
+	/**
+	 * Tells whether or not the text contains a number with the format of a credit card number which passes the Luhn
+	 * check.
+	 */
+	boolean containsCreditCard(CharSequence text) {
+		creditCardMatcher.reset(text);
+		while (creditCardMatcher.find()) {
+			if (isLuhnValid(text, creditCardMatcher.start(), creditCardMatcher.end())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	boolean containsUsSsn(CharSequence text) {
+		return usSsnMatcher.reset(text).find();
+	}
+
+	/**
+	 * Tells whether or not the digits between the given offsets pass the Luhn check: doubling every second digit,
+	 * from the right, the sum of the digits is a multiple of 10.
+	 */
+	static boolean isLuhnValid(CharSequence digits, int start, int end) {
+		int sum = 0;
+		boolean doubled = false;
+		for (int i = end - 1; i >= start; i--) {
+			int digit = digits.charAt(i) - '0';
+			if (doubled) {
+				digit *= 2;
+				if (digit > 9) {
+					digit -= 9;
+				}
+			}
+			sum += digit;
+			doubled = !doubled;
+		}
+		return sum % 10 == 0;
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.pscanrulesBeta;
+
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.parosproxy.paros.network.HttpBody;
+import org.parosproxy.paros.network.HttpMessage;
+
+/**
+ * The text of a response body, shared by all the rules that scan the same message, so that the body is decoded
+ * once per message rather than once per rule.
+ * <p>
+ * Bodies larger than {@value #MAX_DECODED_LENGTH} bytes are only decoded up to that length, the rest is not scanned.
+ * Each rule can also limit how much of the text it scans, see {@link #getText(int)}, the limits are windows over
+ * the same text, not copies.
+ * <p>
+ * The view also provides a hash of the body bytes, see {@link #getContentHash()}, computed once per message.
+ * <p>
+ * Only the view of the last message is kept, and only while there's enough memory.
+ */
+final class ResponseBodyView {
+
+	/**
+	 * The maximum number of bytes of a body decoded.
+	 */
+	static final int MAX_DECODED_LENGTH = 10 * 1024 * 1024;
+
+	// Guarded by the class
+	private static SoftReference<ResponseBodyView> last = new SoftReference<>(null);
+
+	private final HttpBody body;
+	private final int bodyLength;
+
+	// Guarded by this
+	private String text;
+	private boolean contentHashed;
+	private long contentHash;
+
+	private ResponseBodyView(HttpBody body) {
+		this.body = body;
+		this.bodyLength = body.length();
+	}
+
+	/**
+	 * Returns the view of the response body of the given message.
+	 */
+	static synchronized ResponseBodyView get(HttpMessage msg) {
+		HttpBody body = msg.getResponseBody();
+		ResponseBodyView view = last.get();
+		if (view == null || view.body != body || view.bodyLength != body.length()) {
+			view = new ResponseBodyView(body);
+			last = new SoftReference<>(view);
+		}
+		return view;
+	}
+
+	/**
+	 * Tells whether or not the body is larger than what's decoded.
+	 */
+	boolean isTruncated() {
+		return bodyLength > MAX_DECODED_LENGTH;
+	}
+
+	/**
+	 * Returns the text of the body, decoding it if not yet done.
+	 */
+	synchronized String getText() {
+		if (text == null) {
+			text = bodyLength <= MAX_DECODED_LENGTH ? body.toString() : decode(body, MAX_DECODED_LENGTH);
+		}
+		return text;
+	}
+
+	/**
+	 * Returns at most the given number of characters of the start of the text, without copying them.
+	 */
+	CharSequence getText(int maxLength) {
+		String fullText = getText();
+		if (fullText.length() <= maxLength) {
+			return fullText;
+		}
+		return CharBuffer.wrap(fullText, 0, maxLength);
+	}
+
+	/**
+	 * Returns a 64-bit hash of the bytes of the body, computing it if not yet done.
+	 */
+	synchronized long getContentHash() {
+		if (!contentHashed) {
+			byte[] bytes = body.getBytes();
+			contentHash = hash(0, bytes, Math.min(bodyLength, bytes.length));
+			contentHashed = true;
+		}
+		return contentHash;
+	}
+
+	/**
+	 * Returns a 64-bit hash of the given bytes, starting from the given seed, for example the hash of other data, to
+	 * combine them.
+	 */
+	static long hash(long seed, byte[] bytes, int length) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+		long hash = seed ^ 0x9e3779b97f4a7c15L ^ length;
+		while (buffer.remaining() >= 8) {
+			hash = Long.rotateLeft(hash ^ (buffer.getLong() * 0x87c37b91114253d5L), 31) * 0x4cf5ad432745937fL;
+		}
+		while (buffer.hasRemaining()) {
+			hash = Long.rotateLeft(hash ^ ((buffer.get() & 0xff) * 0x87c37b91114253d5L), 11) * 0x4cf5ad432745937fL;
+		}
+		// Final mix, so that all the bits of the hash depend on all the bytes
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	private static String decode(HttpBody body, int length) {
+		Charset charset = StandardCharsets.ISO_8859_1;
+		String charsetName = body.getCharset();
+		if (charsetName != null && Charset.isSupported(charsetName)) {
+			charset = Charset.forName(charsetName);
+		}
+		return new String(body.getBytes(), 0, length, charset);
+	}
+}
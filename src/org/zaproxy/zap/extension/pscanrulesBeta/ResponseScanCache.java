@@ -0,0 +1,163 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.pscanrulesBeta;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.parosproxy.paros.network.HttpMessage;
+
+/**
+ * Remembers the responses a rule scanned without raising any alert, so that the rule can skip responses with the
+ * same content.
+ * <p>
+ * A response is identified by a hash of its body and of the values of the response headers the rule looks at. The
+ * rule can also pass a state when starting a scan, for example the patterns it matches, the cache is cleared when
+ * the state changes, as previous results no longer apply. Only the last {@value #MAX_RESPONSES} responses are
+ * remembered.
+ * <p>
+ * Only suitable for rules whose findings depend just on the content of the response, not on the request.
+ */
+final class ResponseScanCache {
+
+	/**
+	 * The maximum number of responses remembered by each rule.
+	 */
+	static final int MAX_RESPONSES = 10000;
+
+	// The number of alerts raised by the rules running in the thread
+	private static final ThreadLocal<int[]> raisedAlerts = new ThreadLocal<int[]>() {
+
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
+
+	private static final byte[] NO_BYTES = new byte[0];
+
+	private final String[] headerNames;
+
+	// Guarded by this
+	private final Map<Long, Boolean> cleanResponses;
+	private Object state;
+
+	/**
+	 * Constructs a {@code ResponseScanCache} for a rule that looks at the body and the given response headers.
+	 */
+	ResponseScanCache(String... headerNames) {
+		this.headerNames = headerNames;
+		this.cleanResponses = new LinkedHashMap<Long, Boolean>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+				return size() > MAX_RESPONSES;
+			}
+		};
+	}
+
+	/**
+	 * Notifies that a rule running in the current thread raised an alert.
+	 */
+	static void alertRaised() {
+		raisedAlerts.get()[0]++;
+	}
+
+	/**
+	 * Starts the scan of the response of the given message.
+	 * 
+	 * @return the scan, to be passed to {@link #end(Scan)} once done, or {@code null} if a response with the same
+	 *         content was already scanned without raising alerts.
+	 */
+	Scan begin(HttpMessage msg) {
+		return begin(msg, null);
+	}
+
+	/**
+	 * Starts the scan of the response of the given message, with the given state of the rule.
+	 * 
+	 * @return the scan, to be passed to {@link #end(Scan)} once done, or {@code null} if a response with the same
+	 *         content was already scanned, with an equal state, without raising alerts.
+	 */
+	Scan begin(HttpMessage msg, Object ruleState) {
+		return begin(getKey(msg), ruleState);
+	}
+
+	/**
+	 * Starts the scan of the response with the given key, with the given state of the rule.
+	 */
+	Scan begin(long key, Object ruleState) {
+		synchronized (this) {
+			if (ruleState == null ? state != null : !ruleState.equals(state)) {
+				state = ruleState;
+				cleanResponses.clear();
+			} else if (cleanResponses.get(key) != null) {
+				return null;
+			}
+		}
+		return new Scan(key, ruleState, raisedAlerts.get()[0]);
+	}
+
+	/**
+	 * Ends the given scan, remembering the response if no alert was raised since the scan started.
+	 */
+	void end(Scan scan) {
+		if (raisedAlerts.get()[0] != scan.raisedAlerts) {
+			return;
+		}
+		synchronized (this) {
+			if (scan.ruleState == null ? state == null : scan.ruleState.equals(state)) {
+				cleanResponses.put(scan.key, Boolean.TRUE);
+			}
+		}
+	}
+
+	private long getKey(HttpMessage msg) {
+		long key = ResponseBodyView.get(msg).getContentHash();
+		for (String headerName : headerNames) {
+			String value = msg.getResponseHeader().getHeader(headerName);
+			if (value == null) {
+				// Differs from an empty value
+				key = ResponseBodyView.hash(~key, NO_BYTES, 0);
+			} else {
+				byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+				key = ResponseBodyView.hash(key, bytes, bytes.length);
+			}
+		}
+		return key;
+	}
+
+	/**
+	 * A scan in progress.
+	 */
+	static final class Scan {
+
+		private final long key;
+		private final Object ruleState;
+		private final int raisedAlerts;
+
+		private Scan(long key, Object ruleState, int raisedAlerts) {
+			this.key = key;
+			this.ruleState = ruleState;
+			this.raisedAlerts = raisedAlerts;
+		}
+	}
+}
@@ -23,7 +23,6 @@ import java.util.List;
 import net.htmlparser.jericho.Attribute;
 import net.htmlparser.jericho.Attributes;
 import net.htmlparser.jericho.Element;
-import net.htmlparser.jericho.HTMLElementName;
 import net.htmlparser.jericho.Source;
 
 import org.apache.log4j.Logger;
@@ -43,6 +42,7 @@ import org.zaproxy.zap.extension.pscan.PluginPassiveScanner;
 public class ServletParameterPollutionScanner extends PluginPassiveScanner {
 
 	private PassiveScanThread parent = null;
+	private final ResponseScanCache scanCache = new ResponseScanCache();
 	private static final Logger logger = Logger.getLogger(ServletParameterPollutionScanner.class);
 
 	@Override
@@ -61,7 +61,20 @@ public class ServletParameterPollutionScanner extends PluginPassiveScanner {
 
 	@Override
 	public void scanHttpResponseReceive(HttpMessage msg, int id, Source source) {
-		List<Element> formElements = source.getAllElements(HTMLElementName.FORM);
+		if (ParallelRuleExecutor.scanResponse(this, parent, msg, id, source)) {
+			return;
+		}
+		ResponseScanCache.Scan scan = scanCache.begin(msg);
+		if (scan == null) {
+			// Same content already scanned, with no findings
+			return;
+		}
+		scanResponse(msg, id, source);
+		scanCache.end(scan);
+	}
+
+	private void scanResponse(HttpMessage msg, int id, Source source) {
+		List<Element> formElements = HtmlElementIndex.get(source).getForms();
 		
 		if (formElements != null && formElements.size() > 0) {			
 			// Loop through all of the FORM tags
@@ -98,7 +111,7 @@ public class ServletParameterPollutionScanner extends PluginPassiveScanner {
 								0,	// TODO WASC Id
 					            msg);
 
-				    parent.raiseAlert(id, alert);
+				    ParallelRuleExecutor.raiseAlert(parent, id, alert);
 				    // Only raise one alert per page
 				    return;
 				}
@@ -0,0 +1,344 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.pscanrulesBeta;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Decodes Base64 encoded view states as a stream, optionally inflating them if GZIP compressed, so that the view
+ * states can be analysed without copying them in full for each decoding step.
+ * <p>
+ * The view state is read from its (possibly split) encoded values as they are, with no concatenation, and the
+ * decoded (and inflated) data is limited to a maximum length, to not use too much memory with large view states or
+ * compression bombs.
+ */
+final class ViewstateDecoder {
+
+	/**
+	 * The default maximum number of bytes decoded from a view state.
+	 */
+	static final int DEFAULT_MAX_DECODED_LENGTH = 4 * 1024 * 1024;
+
+	private static final int GZIP_MAGIC_FIRST_BYTE = 0x1f;
+	private static final int GZIP_MAGIC_SECOND_BYTE = 0x8b;
+
+	private static final byte[] DECODABET = new byte[128];
+
+	static {
+		Arrays.fill(DECODABET, (byte) -1);
+		String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+		for (int i = 0; i < alphabet.length(); i++) {
+			DECODABET[alphabet.charAt(i)] = (byte) i;
+		}
+	}
+
+	private final int maxDecodedLength;
+
+	ViewstateDecoder() {
+		this(DEFAULT_MAX_DECODED_LENGTH);
+	}
+
+	/**
+	 * Constructs a {@code ViewstateDecoder} that decodes at most the given number of bytes.
+	 */
+	ViewstateDecoder(int maxDecodedLength) {
+		this.maxDecodedLength = maxDecodedLength;
+	}
+
+	/**
+	 * Opens a stream with the decoded data of the given encoded values, read in order as if they were concatenated.
+	 * <p>
+	 * The stream ends once the maximum length is reached. An {@code IOException} is thrown while reading if the
+	 * values are not valid Base64, or if not a valid GZIP stream when inflating.
+	 * 
+	 * @param inflate {@code true} if the decoded data should be inflated when it starts with the GZIP magic number.
+	 */
+	InputStream open(List<? extends CharSequence> encodedValues, boolean inflate) throws IOException {
+		InputStream in = new Base64InputStream(encodedValues);
+		if (inflate) {
+			in = new BufferedInputStream(in);
+			in.mark(2);
+			int first = in.read();
+			int second = in.read();
+			in.reset();
+			if (first == GZIP_MAGIC_FIRST_BYTE && second == GZIP_MAGIC_SECOND_BYTE) {
+				in = new GZIPInputStream(in);
+			}
+		}
+		return new LimitedInputStream(in, maxDecodedLength);
+	}
+
+	/**
+	 * Decodes the given encoded values, read in order as if they were concatenated, into a single buffer.
+	 * 
+	 * @throws IOException if the values are not valid Base64.
+	 */
+	DecodedViewstate decode(List<? extends CharSequence> encodedValues) throws IOException {
+		long encodedLength = 0;
+		for (CharSequence value : encodedValues) {
+			encodedLength += value.length();
+		}
+		byte[] data = new byte[(int) Math.min(encodedLength / 4 * 3 + 3, maxDecodedLength + 1L)];
+		int length = 0;
+		try (InputStream in = new Base64InputStream(encodedValues)) {
+			int read;
+			while (length < data.length && (read = in.read(data, length, data.length - length)) != -1) {
+				length += read;
+			}
+		}
+		boolean truncated = length > maxDecodedLength;
+		return new DecodedViewstate(data, truncated ? maxDecodedLength : length, truncated);
+	}
+
+	/**
+	 * Tells whether or not the given stream contains the given bytes, reading it only until they are found.
+	 */
+	static boolean contains(InputStream in, byte[] bytes) throws IOException {
+		byte[] buffer = new byte[Math.max(8192, bytes.length * 2)];
+		int length = 0;
+		int read;
+		while ((read = in.read(buffer, length, buffer.length - length)) != -1) {
+			length += read;
+			if (indexOf(buffer, length, bytes) != -1) {
+				return true;
+			}
+			// Keep the bytes that could be the start of a match
+			int kept = Math.min(length, bytes.length - 1);
+			System.arraycopy(buffer, length - kept, buffer, 0, kept);
+			length = kept;
+		}
+		return false;
+	}
+
+	private static int indexOf(byte[] buffer, int length, byte[] bytes) {
+		outer: for (int i = 0; i <= length - bytes.length; i++) {
+			for (int j = 0; j < bytes.length; j++) {
+				if (buffer[i + j] != bytes[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * The decoded data of a view state, also accessible as characters (one per byte) so that it can be matched with
+	 * regular expressions without being copied into a {@code String}.
+	 */
+	static final class DecodedViewstate implements CharSequence {
+
+		private final byte[] data;
+		private final int offset;
+		private final int length;
+		private final boolean truncated;
+
+		private DecodedViewstate(byte[] data, int length, boolean truncated) {
+			this(data, 0, length, truncated);
+		}
+
+		private DecodedViewstate(byte[] data, int offset, int length, boolean truncated) {
+			this.data = data;
+			this.offset = offset;
+			this.length = length;
+			this.truncated = truncated;
+		}
+
+		/**
+		 * Tells whether or not the view state was longer than the maximum length, in which case only its start was
+		 * decoded.
+		 */
+		boolean isTruncated() {
+			return truncated;
+		}
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (index < 0 || index >= length) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", length: " + length);
+			}
+			return (char) (data[offset + index] & 0xff);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			if (start < 0 || end > length || start > end) {
+				throw new IndexOutOfBoundsException("Start: " + start + ", end: " + end + ", length: " + length);
+			}
+			return new DecodedViewstate(data, offset + start, end - start, false);
+		}
+
+		@Override
+		public String toString() {
+			char[] chars = new char[length];
+			for (int i = 0; i < length; i++) {
+				chars[i] = (char) (data[offset + i] & 0xff);
+			}
+			return new String(chars);
+		}
+	}
+
+	/**
+	 * Decodes Base64 characters read from a sequence of values, ignoring white space. The decoding stops at the
+	 * first padding character.
+	 */
+	private static class Base64InputStream extends InputStream {
+
+		private final Iterator<? extends CharSequence> values;
+		private CharSequence value;
+		private int position;
+
+		private final byte[] decoded = new byte[3];
+		private int decodedLength;
+		private int decodedPosition;
+		private boolean ended;
+
+		Base64InputStream(List<? extends CharSequence> values) {
+			this.values = values.iterator();
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (decodedPosition == decodedLength && !decodeNextQuantum()) {
+				return -1;
+			}
+			return decoded[decodedPosition++] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			int count = 0;
+			while (count < len) {
+				if (decodedPosition == decodedLength && !decodeNextQuantum()) {
+					break;
+				}
+				int n = Math.min(len - count, decodedLength - decodedPosition);
+				System.arraycopy(decoded, decodedPosition, b, off + count, n);
+				decodedPosition += n;
+				count += n;
+			}
+			return count == 0 ? -1 : count;
+		}
+
+		private boolean decodeNextQuantum() throws IOException {
+			if (ended) {
+				return false;
+			}
+			int bits = 0;
+			int chars = 0;
+			while (chars < 4) {
+				int c = nextChar();
+				if (c == -1 || c == '=') {
+					ended = true;
+					break;
+				}
+				if (Character.isWhitespace(c)) {
+					continue;
+				}
+				int sextet = c < DECODABET.length ? DECODABET[c] : -1;
+				if (sextet == -1) {
+					throw new IOException("Invalid Base64 character: " + (char) c);
+				}
+				bits = (bits << 6) | sextet;
+				chars++;
+			}
+			if (chars == 1) {
+				throw new IOException("Invalid Base64 length.");
+			}
+			if (chars == 0) {
+				return false;
+			}
+			// Align the bits as if the quantum was complete
+			bits <<= 6 * (4 - chars);
+			decodedLength = chars - 1;
+			decoded[0] = (byte) (bits >> 16);
+			decoded[1] = (byte) (bits >> 8);
+			decoded[2] = (byte) bits;
+			decodedPosition = 0;
+			return true;
+		}
+
+		private int nextChar() {
+			while (value == null || position == value.length()) {
+				if (!values.hasNext()) {
+					return -1;
+				}
+				value = values.next();
+				position = 0;
+			}
+			return value.charAt(position++);
+		}
+	}
+
+	/**
+	 * An {@code InputStream} that ends after a given number of bytes.
+	 */
+	private static class LimitedInputStream extends InputStream {
+
+		private final InputStream in;
+		private long remaining;
+
+		LimitedInputStream(InputStream in, long limit) {
+			this.in = in;
+			this.remaining = limit;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			int b = in.read();
+			if (b != -1) {
+				remaining--;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			int read = in.read(b, off, (int) Math.min(len, remaining));
+			if (read > 0) {
+				remaining -= read;
+			}
+			return read;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
@@ -1,8 +1,8 @@
 package org.zaproxy.zap.extension.pscanrulesBeta;
 
 import java.io.IOException;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -11,11 +11,11 @@ import java.util.TreeMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import net.htmlparser.jericho.Element;
 import net.htmlparser.jericho.Source;
 import net.htmlparser.jericho.StartTag;
 
 import org.parosproxy.paros.core.scanner.Alert;
-import org.parosproxy.paros.extension.encoder.Base64;
 import org.parosproxy.paros.network.HttpMessage;
 import org.zaproxy.zap.extension.pscan.PassiveScanThread;
 import org.zaproxy.zap.extension.pscan.PluginPassiveScanner;
@@ -24,7 +24,9 @@ public class ViewstateScanner extends PluginPassiveScanner {
 	
 	
     private PassiveScanThread parent = null;
+    private final ResponseScanCache scanCache = new ResponseScanCache();
     private static Pattern hiddenFieldPattern = Pattern.compile("__.*");
+    private final ViewstateDecoder decoder = new ViewstateDecoder();
 
     @Override
     public void scanHttpRequestSend(HttpMessage msg, int id) {
@@ -33,6 +35,19 @@ public class ViewstateScanner extends PluginPassiveScanner {
 
     @Override
     public void scanHttpResponseReceive(HttpMessage msg, int id, Source source) {
+        if (ParallelRuleExecutor.scanResponse(this, parent, msg, id, source)) {
+            return;
+        }
+        ResponseScanCache.Scan scan = scanCache.begin(msg);
+        if (scan == null) {
+            // Same content already scanned, with no findings
+            return;
+        }
+        scanResponse(msg, id, source);
+        scanCache.end(scan);
+    }
+
+    private void scanResponse(HttpMessage msg, int id, Source source) {
 
         Map<String, StartTag> hiddenFields = getHiddenFields(source);
          if (hiddenFields.isEmpty())
@@ -85,7 +100,7 @@ public class ViewstateScanner extends PluginPassiveScanner {
 				0,	// TODO WASC Id
                 msg);
         
-        parent.raiseAlert(id, alert);
+        ParallelRuleExecutor.raiseAlert(parent, id, alert);
     }
 
     private void alertOldAspVersion(HttpMessage msg, int id) {
@@ -107,7 +122,7 @@ public class ViewstateScanner extends PluginPassiveScanner {
 				0,	// TODO WASC Id
                 msg);
         
-        parent.raiseAlert(id, alert);
+        ParallelRuleExecutor.raiseAlert(parent, id, alert);
     }
     
     //TODO: see if this alert triggers too often, as the detection rule is far from being robust for the moment
@@ -129,7 +144,7 @@ public class ViewstateScanner extends PluginPassiveScanner {
 				0,	// TODO WASC Id
                 msg);
 
-        parent.raiseAlert(id, alert);
+        ParallelRuleExecutor.raiseAlert(parent, id, alert);
     }
 
     private void alertNoMACforSure(HttpMessage msg, int id) {
@@ -150,7 +165,7 @@ public class ViewstateScanner extends PluginPassiveScanner {
 			0,	// TODO WASC Id
             msg);
 
-        parent.raiseAlert(id, alert);
+        ParallelRuleExecutor.raiseAlert(parent, id, alert);
     }
     
     private void alertSplitViewstate(HttpMessage msg, int id) {
@@ -171,7 +186,7 @@ public class ViewstateScanner extends PluginPassiveScanner {
 			0,	// TODO WASC Id
             msg);
 
-        parent.raiseAlert(id, alert);
+        ParallelRuleExecutor.raiseAlert(parent, id, alert);
     }
 
     // TODO: is this ID OK?
@@ -192,11 +207,14 @@ public class ViewstateScanner extends PluginPassiveScanner {
 
 
     private Map<String, StartTag> getHiddenFields(Source source) {
-        List<StartTag> result = source.getAllStartTags("input");
+        HtmlElementIndex elementIndex = HtmlElementIndex.get(source);
+        List<StartTag> result = new ArrayList<>();
+        for (Element input : elementIndex.getInputs())
+            result.add(input.getStartTag());
 
         // Searching for name only tags only makes sense for Asp.Net 1.1 websites
         // TODO: Enhance this ugly code code
-        List<StartTag> hiddenNames = source.getAllStartTags("name", hiddenFieldPattern);
+        List<StartTag> hiddenNames = elementIndex.getStartTags("name", hiddenFieldPattern);
         for (StartTag st : hiddenNames)
             if (! result.contains(st))
                 result.add(st);
@@ -220,19 +238,19 @@ public class ViewstateScanner extends PluginPassiveScanner {
         if (! lstHiddenFields.containsKey("__VIEWSTATEFIELDCOUNT"))
             return new Viewstate(lstHiddenFields.get("__VIEWSTATE"));
 
-        // Otherwise we concatenate manually the viewstate 
-        StringBuilder tmpValue = new StringBuilder();
+        // Otherwise we gather the parts of the viewstate, decoded in order as if concatenated
+        List<String> values = new ArrayList<>();
 
-        tmpValue.append( lstHiddenFields.get("__VIEWSTATE").getAttributeValue("value") );
+        values.add( lstHiddenFields.get("__VIEWSTATE").getAttributeValue("value") );
 
         int max = Integer.parseInt(
                     lstHiddenFields.get("__VIEWSTATEFIELDCOUNT").getAttributeValue("value")
                     );
         for (int i = 1; i < max ; i++) {
-            tmpValue.append( lstHiddenFields.get("__VIEWSTATE" + i).getAttributeValue("value") );
+            values.add( lstHiddenFields.get("__VIEWSTATE" + i).getAttributeValue("value") );
         }
 
-        return new Viewstate(tmpValue.toString(), true);
+        return new Viewstate(values, true);
     }
     
     private class ViewstateAnalyzerResult {
@@ -348,8 +366,9 @@ public class ViewstateScanner extends PluginPassiveScanner {
     // inner class Viewstate
     private class Viewstate {
 
+        // The start of the encoded value, enough to tell the version
         private String base64Value;
-        private String decodedValue;
+        private CharSequence decodedValue;
         private boolean isValid = false;
         private boolean isSplit;
         private ViewstateVersion version;
@@ -360,32 +379,24 @@ public class ViewstateScanner extends PluginPassiveScanner {
 
         
         public Viewstate(StartTag s, boolean wasSplit) {
-        	if (s != null)
-        	{
-        		this.isSplit = wasSplit;
-        		this.base64Value = s.getAttributeValue("value");
-        		try {
-					this.decodedValue = new String(Base64.decode(this.base64Value), Charset.forName("UTF-8"));
-	        		this.isValid = true;
-	        		this.setVersion();
-	        	} catch (IllegalArgumentException | IOException e) {
-					//Incorrect Base64 value.
-				}
-        	}
+        	this(s == null ? null : Collections.singletonList(s.getAttributeValue("value")), wasSplit);
         }
         
-        // TODO: tidy up these two constructors
         // TODO: check if splitting was possible with ASP.NET 1.1
-        public Viewstate(String s, boolean wasSplit) {
-        	if (s != null)
+        public Viewstate(List<String> values, boolean wasSplit) {
+        	if (values != null && ! values.contains(null))
         	{
         		this.isSplit = wasSplit;
-        		this.base64Value = s;
+        		this.base64Value = values.get(0);
         		try {
-					this.decodedValue = new String(Base64.decode(this.base64Value), Charset.forName("UTF-8"));
-					this.isValid = true;
-	        		this.setVersion();
-        		} catch (IllegalArgumentException | IOException e) {
+        			ViewstateDecoder.DecodedViewstate decoded = decoder.decode(values);
+        			// The MAC tests need the end of the viewstate, too large ones are not analysed
+        			if (! decoded.isTruncated()) {
+        				this.decodedValue = decoded;
+        				this.isValid = true;
+        				this.setVersion();
+        			}
+        		} catch (IOException e) {
 					//Incorrect Base64 value.
 				}
         	}
@@ -409,7 +420,7 @@ public class ViewstateScanner extends PluginPassiveScanner {
         public boolean hasMACtest1() {
         	int l = this.decodedValue.length();
         	// By default, the MAC is 20 characters long
-        	String lastCharsBeforeMac = this.decodedValue.substring(l-22, l-20); 
+        	String lastCharsBeforeMac = this.decodedValue.subSequence(l-22, l-20).toString(); 
         	
             if (this.version.equals(ViewstateVersion.ASPNET2))
             	return lastCharsBeforeMac.equals("dd");
@@ -423,7 +434,7 @@ public class ViewstateScanner extends PluginPassiveScanner {
         public boolean hasMACtest2() {
         	int l = this.decodedValue.length();
         	// By default, the MAC is 20 characters long
-        	String lastCharsBeforeMac = this.decodedValue.substring(l-2); 
+        	String lastCharsBeforeMac = this.decodedValue.subSequence(l-2, l).toString(); 
         	
             if (this.version.equals(ViewstateVersion.ASPNET2))
             	return ! lastCharsBeforeMac.equals("dd");
@@ -434,7 +445,7 @@ public class ViewstateScanner extends PluginPassiveScanner {
             return true;
         }
         
-        public String getDecodedValue() {
+        public CharSequence getDecodedValue() {
         	return this.decodedValue;
         }
 
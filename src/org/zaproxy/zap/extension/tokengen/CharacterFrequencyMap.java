@@ -44,6 +44,7 @@ public class CharacterFrequencyMap {
 	private static String HEX_CHRS = "0123456789ABCDEFabcdef";
 	
 	private List<String> tokens = new ArrayList<>();
+	private List<Long> timestamps = new ArrayList<>();
 	private Map<Character, Integer> map = new HashMap<>();
 	private char lowestChar = Character.MAX_VALUE;
 	private char highestChar = Character.MIN_VALUE;
@@ -55,9 +56,19 @@ public class CharacterFrequencyMap {
 	private int maxLength = 0;
 	private Map <Integer, Set<Character>> charsPerPosn = new HashMap<>();
 	private Set<Character> allChrs = new HashSet<>();
+	private TokenEntropyEstimator entropyEstimator = new TokenEntropyEstimator();
 
-	public void addToken (String token) {
+	/**
+	 * Adds a token along with the time, in milliseconds, it was requested.
+	 */
+	public synchronized void addToken (String token, long timestamp) {
+		addToken(token);
+		timestamps.add(timestamp);
+	}
+
+	public synchronized void addToken (String token) {
 		tokens.add(token);
+		entropyEstimator.addToken(token);
 		if (token.length() > maxLength) {
 			maxLength = token.length();
 		}
@@ -121,6 +132,10 @@ public class CharacterFrequencyMap {
 		return entropy;
 	}
 	
+	public TokenEntropyEstimator getEntropyEstimator() {
+		return entropyEstimator;
+	}
+	
 	private int mdev (int i) {
 		// TODO where does stompy get this formula from??
 		return (int) (500 / Math.pow(i, 0.375) + 5);
@@ -291,6 +306,14 @@ public class CharacterFrequencyMap {
 		return tokens;
 	}
 
+	/**
+	 * Returns the times the tokens were requested, empty if they are not known (eg the tokens were loaded from a
+	 * file).
+	 */
+	public List<Long> getTimestamps() {
+		return timestamps;
+	}
+
 	public BigInteger getBigIntegerToken(int index) {
 		if (index >= tokens.size()) {
 			return null;
@@ -24,6 +24,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import net.htmlparser.jericho.Element;
 import net.htmlparser.jericho.HTMLElementName;
@@ -54,10 +55,10 @@ public class ExtensionTokenGen extends ExtensionAdaptor {
 
 	private TokenParam tokenParam = null;;
 	
-	private List<TokenGenerator> generators = new ArrayList<>();
-	private int runningGenerators = 0;
-	private CharacterFrequencyMap cfm = null; 
-	private boolean manuallyStopped = false;
+	// The generation started from the UI, if any
+	private TokenGeneration generation = null;
+	// All of the generations running, including the ones started through the API
+	private List<TokenGeneration> generations = new CopyOnWriteArrayList<>();
 	
     private static Logger log = Logger.getLogger(ExtensionTokenGen.class);
 
@@ -104,7 +105,9 @@ public class ExtensionTokenGen extends ExtensionAdaptor {
 	
     @Override
     public void unload() {
-        stopTokenGeneration();
+        for (TokenGeneration gen : generations) {
+            gen.stop();
+        }
         
         if (getView() != null) {
             if (analyseTokensDialog != null) {
@@ -197,8 +200,10 @@ public class ExtensionTokenGen extends ExtensionAdaptor {
 	}
 
 
-	protected void addTokenResult(HttpMessage msg, HtmlParameterStats targetToken) {
-		// Extract the token
+	/**
+	 * Returns the value of the given token in the given message, or {@code null} if not present.
+	 */
+	public String extractToken(HttpMessage msg, HtmlParameterStats targetToken) {
 		String token = null;
 		switch (targetToken.getType()) {
 		case cookie:
@@ -219,12 +224,7 @@ public class ExtensionTokenGen extends ExtensionAdaptor {
 			// TODO
 			break;
 		}
-		if (token != null) {
-			this.cfm.addToken(token);
-			msg.setNote(token);
-		}
-		
-		this.getTokenPanel().addTokenResult(new MessageSummary(msg));
+		return token;
 	}
 
 	private TokenGenPopupMenu getPopupTokenGen() {
@@ -263,63 +263,99 @@ public class ExtensionTokenGen extends ExtensionAdaptor {
 	}
 
 	public void showAnalyseTokensDialog() {
-		this.showAnalyseTokensDialog(this.cfm);
+		if (this.generation != null) {
+			this.showAnalyseTokensDialog(this.generation.getCharacterFrequencyMap());
+		}
+	}
+
+	/**
+	 * Starts generating tokens, without any UI involvement. Can be called any number of times, the generations
+	 * are independent of each other and of the one started from the UI.
+	 * 
+	 * @param msg the request which returns the token
+	 * @param numGen the number of requests to send
+	 * @param htmlParameterStats the token to collect
+	 * @param listenner notified of each token generated, might be {@code null}
+	 * @return the generation, already started
+	 */
+	public TokenGeneration generateTokens(HttpMessage msg, int numGen, HtmlParameterStats htmlParameterStats,
+			TokenGenerationListenner listenner) {
+		final TokenGeneration gen = new TokenGeneration(this, msg, numGen, htmlParameterStats, 
+				this.getTokenParam().getThreadPerScan());
+		if (listenner != null) {
+			gen.addListenner(listenner);
+		}
+		gen.addListenner(new TokenGenerationListenner() {
+			@Override
+			public void tokenGenerated(TokenGeneration generation, MessageSummary summary) {
+			}
+
+			@Override
+			public void generationFinished(TokenGeneration generation) {
+				generations.remove(generation);
+			}
+		});
+		generations.add(gen);
+		gen.start();
+		return gen;
+	}
+
+	/**
+	 * Runs all of the analysis tests on the given tokens, in the calling thread.
+	 * 
+	 * @return the results, in the order the tests were run
+	 */
+	public List<TokenAnalysisTestResult> analyseTokens(CharacterFrequencyMap cfm) {
+		final List<TokenAnalysisTestResult> results = new ArrayList<>(TokenAnalyserThread.NUM_TESTS);
+		TokenAnalyserThread analyser = new TokenAnalyserThread(getMessages());
+		analyser.setCfm(cfm);
+		analyser.addListenner(new TokenAnalyserListenner() {
+			@Override
+			public void notifyTestResult(TokenAnalysisTestResult result) {
+				results.add(result);
+			}
+		});
+		analyser.run();
+		return results;
 	}
 
 	public void startTokenGeneration(HttpMessage msg, int numGen, HtmlParameterStats htmlParameterStats) {
-		this.cfm = new CharacterFrequencyMap();
 		log.debug("startTokenGeneration " + msg.getRequestHeader().getURI() + " # " + numGen);
 		this.getTokenPanel().scanStarted(numGen);
 		
-		int numThreads = this.getTokenParam().getThreadPerScan();
-		this.manuallyStopped = false;
-		
-		generators = new ArrayList<>();
-		
-		for (int i=0; i < numThreads; i++) {
-			TokenGenerator gen = new TokenGenerator();
-			generators.add(gen);
-			
-			gen.setExtension(this);
-			gen.setHttpMessage(msg);
-			gen.setNumberTokens(numGen / numThreads);	// TODO what about remainder?
-			gen.setTargetToken(htmlParameterStats);
-			gen.execute();
-			this.runningGenerators++;
-		}
-		
-	}
-	
-	protected void generatorStopped(TokenGenerator gen) {
-		this.runningGenerators--;
-		log.debug("generatorStopped runningGenerators " + runningGenerators);
-		
-		if (this.runningGenerators <= 0) {
-			log.debug("generatorStopped scanFinished");
-			this.getTokenPanel().scanFinshed();
-			
-			if (! manuallyStopped) {
-				this.showAnalyseTokensDialog();
+		this.generation = generateTokens(msg, numGen, htmlParameterStats, new TokenGenerationListenner() {
+			@Override
+			public void tokenGenerated(TokenGeneration generation, MessageSummary summary) {
+				getTokenPanel().addTokenResult(summary);
 			}
-		}
+
+			@Override
+			public void generationFinished(TokenGeneration generation) {
+				log.debug("generationFinished scanFinished");
+				getTokenPanel().scanFinshed();
+				
+				if (! generation.isStopped()) {
+					showAnalyseTokensDialog(generation.getCharacterFrequencyMap());
+				}
+			}
+		});
 	}
 
 	public void stopTokenGeneration() {
-		this.manuallyStopped = true;
-		for (TokenGenerator gen : generators) {
-			gen.stopGenerating();
+		if (this.generation != null) {
+			this.generation.stop();
 		}
 	}
 
 	public void pauseTokenGeneration() {
-		for (TokenGenerator gen : generators) {
-			gen.setPaused(true);
+		if (this.generation != null) {
+			this.generation.setPaused(true);
 		}
 	}
 
 	public void resumeTokenGeneration() {
-		for (TokenGenerator gen : generators) {
-			gen.setPaused(false);
+		if (this.generation != null) {
+			this.generation.setPaused(false);
 		}
 	}
 	@Override
@@ -21,21 +21,24 @@ import org.parosproxy.paros.network.HttpMessage;
 
 public class MessageSummary {
 
+    // The numeric fields are only formatted when the row is rendered
     private String method;
     private String uriString;
-    private String statusCodeStr;
+    private int statusCode;
     private String reasonPhrase;
-    private String timeElapsedMillis;
-    private String lengthStr;
+    private int timeElapsedMillis;
+    private long timeSentMillis;
+    private int length;
     private String token;
 
 	public MessageSummary(HttpMessage msg) {
 		this.method = msg.getRequestHeader().getMethod();
         this.uriString = msg.getRequestHeader().getURI().toString();
-        this.statusCodeStr = Integer.toString(msg.getResponseHeader().getStatusCode());
+        this.statusCode = msg.getResponseHeader().getStatusCode();
         this.reasonPhrase = msg.getResponseHeader().getReasonPhrase();
-        this.timeElapsedMillis = Integer.toString(msg.getTimeElapsedMillis());
-        this.lengthStr = Integer.toString(msg.getResponseBody().toString().length());
+        this.timeElapsedMillis = msg.getTimeElapsedMillis();
+        this.timeSentMillis = msg.getTimeSentMillis();
+        this.length = msg.getResponseBody().toString().length();
         this.token = msg.getNote();        // The note is used to store the token 
 	}
 
@@ -47,8 +50,12 @@ public class MessageSummary {
 		return uriString;
 	}
 
+	public int getStatusCode() {
+		return statusCode;
+	}
+
 	public String getStatusCodeStr() {
-		return statusCodeStr;
+		return Integer.toString(statusCode);
 	}
 
 	public String getReasonPhrase() {
@@ -56,11 +63,23 @@ public class MessageSummary {
 	}
 
 	public String getTimeElapsedMillis() {
+		return Integer.toString(timeElapsedMillis);
+	}
+
+	public int getTimeElapsed() {
 		return timeElapsedMillis;
 	}
 
+	public long getTimeSentMillis() {
+		return timeSentMillis;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
 	public String getLengthStr() {
-		return lengthStr;
+		return Integer.toString(length);
 	}
 
 	public String getToken() {
@@ -36,7 +36,7 @@ import com.fasteasytrade.JRandTest.Tests.Count8Bits;
 
 public class TokenAnalyserThread extends Thread {
 
-	public static final int NUM_TESTS = 9;		// Change manually if you add any tests!
+	public static final int NUM_TESTS = 15;		// Change manually if you add any tests!
 
 	private CharacterFrequencyMap cfm = null; 
 	private List<TokenAnalyserListenner> listenners = new ArrayList<>();
@@ -45,6 +45,16 @@ public class TokenAnalyserThread extends Thread {
 
     private static Logger log = Logger.getLogger(TokenAnalyserThread.class);
 
+    private static final OutputDestination NULL_OUTPUT_DESTINATION = new OutputDestination() {
+		@Override
+		public void printf(String s) {
+		}
+
+		@Override
+		public void puts(String s) {
+		}
+	};
+
     private ResourceBundle messages;
     
     public TokenAnalyserThread(ResourceBundle messages) {
@@ -66,22 +76,7 @@ public class TokenAnalyserThread extends Thread {
 		// Maximum theoretical entropy
 		double maxEntropy = cfm.getMaxTheoreticalEntropy();
 		result = new TokenAnalysisTestResult(TokenAnalysisTestResult.Type.MAX_ENTROPY);
-		if (maxEntropy >= 80) {
-			result.setResult(TokenAnalysisTestResult.Result.PASS);
-			result.setSummary(messages.getString("tokengen.analyse.summary.excellent"));
-		} else if (maxEntropy >= 60) {
-			result.setResult(TokenAnalysisTestResult.Result.HIGH);
-			result.setSummary(messages.getString("tokengen.analyse.summary.good"));
-		} else if (maxEntropy >= 40) {
-			result.setResult(TokenAnalysisTestResult.Result.MEDIUM);
-			result.setSummary(messages.getString("tokengen.analyse.summary.robust"));
-		} else if (maxEntropy >= 20) {
-			result.setResult(TokenAnalysisTestResult.Result.LOW);
-			result.setSummary(messages.getString("tokengen.analyse.summary.vulnerable"));
-		} else {
-			result.setResult(TokenAnalysisTestResult.Result.FAIL);
-			result.setSummary(messages.getString("tokengen.analyse.summary.deterministic"));
-		}
+		rateEntropy(result, maxEntropy);
 		if (cancelled) {
 			return;
 		}
@@ -93,6 +88,18 @@ public class TokenAnalyserThread extends Thread {
 			return;
 		}
 		
+		// Entropy estimated from the character frequencies
+		TokenEntropyEstimator estimator = cfm.getEntropyEstimator();
+		runEntropyTest(estimator, TokenEntropyEstimator.Estimator.SHANNON, 
+				TokenAnalysisTestResult.Type.SHANNON_ENTROPY, "tokengen.analyse.detail.shannonentropy");
+		runEntropyTest(estimator, TokenEntropyEstimator.Estimator.MIN, 
+				TokenAnalysisTestResult.Type.MIN_ENTROPY, "tokengen.analyse.detail.minentropy");
+		runEntropyTest(estimator, TokenEntropyEstimator.Estimator.COLLISION, 
+				TokenAnalysisTestResult.Type.COLLISION_ENTROPY, "tokengen.analyse.detail.collisionentropy");
+		if (cancelled) {
+			return;
+		}
+		
 		// Character uniformity
 		this.notifyListenners(cfm.checkCharacterUniformity());
 		if (cancelled) {
@@ -105,6 +112,21 @@ public class TokenAnalyserThread extends Thread {
 			return;
 		}
 
+		// Relationships between the tokens
+		TokenCorrelationAnalyser correlationAnalyser = new TokenCorrelationAnalyser(cfm, messages);
+		this.notifyListenners(correlationAnalyser.checkSequentialDeltas());
+		if (cancelled) {
+			return;
+		}
+		this.notifyListenners(correlationAnalyser.checkTimestampCorrelation());
+		if (cancelled) {
+			return;
+		}
+		this.notifyListenners(correlationAnalyser.checkRepeatedNgrams());
+		if (cancelled) {
+			return;
+		}
+
 		TokenRandomStream trs = new TokenRandomStream(cfm);
 
 		runTest (new Count1Bit(), trs, TokenAnalysisTestResult.Type.COUNT_1_BIT);
@@ -116,6 +138,44 @@ public class TokenAnalyserThread extends Thread {
 		
 	}
 
+	private void rateEntropy(TokenAnalysisTestResult result, double entropy) {
+		if (entropy >= 80) {
+			result.setResult(TokenAnalysisTestResult.Result.PASS);
+			result.setSummary(messages.getString("tokengen.analyse.summary.excellent"));
+		} else if (entropy >= 60) {
+			result.setResult(TokenAnalysisTestResult.Result.HIGH);
+			result.setSummary(messages.getString("tokengen.analyse.summary.good"));
+		} else if (entropy >= 40) {
+			result.setResult(TokenAnalysisTestResult.Result.MEDIUM);
+			result.setSummary(messages.getString("tokengen.analyse.summary.robust"));
+		} else if (entropy >= 20) {
+			result.setResult(TokenAnalysisTestResult.Result.LOW);
+			result.setSummary(messages.getString("tokengen.analyse.summary.vulnerable"));
+		} else {
+			result.setResult(TokenAnalysisTestResult.Result.FAIL);
+			result.setSummary(messages.getString("tokengen.analyse.summary.deterministic"));
+		}
+	}
+
+	private void runEntropyTest(TokenEntropyEstimator estimator, TokenEntropyEstimator.Estimator type, 
+			TokenAnalysisTestResult.Type resultType, String detailKey) {
+		if (cancelled) {
+			return;
+		}
+		TokenAnalysisTestResult result = new TokenAnalysisTestResult(resultType);
+		double[] entropies = estimator.getEntropies(type);
+		double total = 0;
+		List<String> details = new ArrayList<>();
+		for (int i = 0; i < entropies.length; i++) {
+			total += entropies[i];
+			details.add("Col " + i + " " + String.format("%.3f", entropies[i]));
+		}
+		details.add(0, messages.getString(detailKey) + " " + total);
+		rateEntropy(result, total);
+		result.setDetails(details);
+		this.notifyListenners(result);
+	}
+
 	private void runTest(Base test, RandomStream rs, TokenAnalysisTestResult.Type type) {
 		if (cancelled) {
 			return;
@@ -123,7 +183,12 @@ public class TokenAnalyserThread extends Thread {
 		try {
 			TokenAnalysisTestResult result = new TokenAnalysisTestResult(type); 
 			test.registerInput(rs);
-			test.addOutputDestination(this.outputDestination);
+			if (this.outputDestination != null) {
+				test.addOutputDestination(this.outputDestination);
+			} else {
+				// Otherwise the tests write to System.out
+				test.addOutputDestination(NULL_OUTPUT_DESTINATION);
+			}
 			test.runTest();
 			result.setDetails(test.getDetails());
 			result.setFailures(test.getErrors());
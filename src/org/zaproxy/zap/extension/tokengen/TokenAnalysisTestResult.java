@@ -23,7 +23,7 @@ import org.parosproxy.paros.Constant;
 
 public class TokenAnalysisTestResult {
 	
-	public enum Type {MAX_ENTROPY, CHR_UNIFORMITY, CHR_TRANSITIONS, COUNT_1_BIT, COUNT_2_BITS, COUNT_3_BITS, COUNT_4_BITS, COUNT_8_BITS, COUNT_16_BITS};
+	public enum Type {MAX_ENTROPY, SHANNON_ENTROPY, MIN_ENTROPY, COLLISION_ENTROPY, CHR_UNIFORMITY, CHR_TRANSITIONS, SEQUENTIAL_DELTAS, TIMESTAMP_CORRELATION, REPEATED_NGRAMS, COUNT_1_BIT, COUNT_2_BITS, COUNT_3_BITS, COUNT_4_BITS, COUNT_8_BITS, COUNT_16_BITS};
 	public enum Result {FAIL, LOW, MEDIUM, HIGH, PASS};
 	private Type type;
 	private String name;
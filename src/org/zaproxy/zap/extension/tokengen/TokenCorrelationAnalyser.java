@@ -0,0 +1,401 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ *
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zaproxy.zap.extension.tokengen;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+import org.zaproxy.zap.extension.tokengen.TokenAnalysisTestResult.Result;
+
+/**
+ * Checks the relationships between the tokens, rather than the distribution of the characters within them:
+ * successive tokens which are derived from each other (eg incrementing counters), tokens derived from the time
+ * they were generated and substrings shared by many tokens.
+ * <p>
+ * All the checks are done in (near) linear time in the total length of the tokens, using hash maps, running sums
+ * and rolling hashes, so they can be used on large samples.
+ */
+public class TokenCorrelationAnalyser {
+
+	// z-scores over these are very unlikely to happen by chance
+	private static final double Z_FAIL = 5;
+	private static final double Z_LOW = 4;
+
+	private static final int MAX_REPORTED_NGRAMS = 20;
+
+	private final CharacterFrequencyMap cfm;
+	private final ResourceBundle messages;
+
+	public TokenCorrelationAnalyser(CharacterFrequencyMap cfm, ResourceBundle messages) {
+		this.cfm = cfm;
+		this.messages = messages;
+	}
+
+	/**
+	 * Checks the numeric differences between successive tokens and the prefixes they share.
+	 */
+	public TokenAnalysisTestResult checkSequentialDeltas() {
+		TokenAnalysisTestResult result = new TokenAnalysisTestResult(TokenAnalysisTestResult.Type.SEQUENTIAL_DELTAS);
+		List<String> tokens = cfm.getTokens();
+		int size = tokens.size();
+		if (size < 3) {
+			return notEnoughData(result);
+		}
+		List<BigInteger> values = getNumericTokens();
+		if (values == null) {
+			result.setResult(Result.MEDIUM);
+			result.setSummary(messages.getString("tokengen.analyse.summary.notnumeric"));
+			return result;
+		}
+		List<String> details = new ArrayList<>();
+		List<String> issues = new ArrayList<>();
+		Result res = Result.PASS;
+
+		Map<BigInteger, int[]> deltaCounts = new HashMap<>();
+		BigInteger previous = values.get(0);
+		BigInteger topDelta = null;
+		int topDeltaCount = 0;
+		int increasing = 0;
+		for (int i = 1; i < size; i++) {
+			BigInteger current = values.get(i);
+			BigInteger delta = current.subtract(previous);
+			if (delta.signum() > 0) {
+				increasing++;
+			}
+			int[] count = deltaCounts.get(delta);
+			if (count == null) {
+				count = new int[1];
+				deltaCounts.put(delta, count);
+			}
+			count[0]++;
+			if (count[0] > topDeltaCount) {
+				topDeltaCount = count[0];
+				topDelta = delta;
+			}
+			previous = current;
+		}
+		int deltas = size - 1;
+		details.add("Increasing successive tokens: " + increasing + " of " + deltas);
+		details.add("Most common difference between successive tokens: " + topDelta + " (" + topDeltaCount + " times)");
+
+		double topDeltaRatio = (double) topDeltaCount / deltas;
+		if (topDeltaCount > 2 && topDeltaRatio >= 0.5) {
+			issues.add("Successive tokens differ by " + topDelta + " in " + topDeltaCount + " of " + deltas + " cases");
+			res = worst(res, Result.FAIL);
+		} else if (topDeltaCount > 2 && topDeltaRatio >= 0.1) {
+			issues.add("Successive tokens differ by " + topDelta + " in " + topDeltaCount + " of " + deltas + " cases");
+			res = worst(res, Result.LOW);
+		}
+
+		// For unrelated tokens about half of the successive tokens are greater than the previous one
+		double z = Math.abs(increasing - deltas / 2.0) / Math.sqrt(deltas / 4.0);
+		if (z > Z_FAIL) {
+			issues.add("Successive tokens are increasing in " + increasing + " of " + deltas + " cases, expected about " + deltas / 2);
+			res = worst(res, Result.FAIL);
+		} else if (z > Z_LOW) {
+			issues.add("Successive tokens are increasing in " + increasing + " of " + deltas + " cases, expected about " + deltas / 2);
+			res = worst(res, Result.LOW);
+		}
+
+		// Compare the prefixes shared by successive tokens with the ones shared by tokens generated further apart,
+		// tokens derived from the time or a counter share more characters with their neighbours
+		double successivePrefix = 0;
+		double distantPrefix = 0;
+		int half = size / 2;
+		for (int i = 0; i < half; i++) {
+			successivePrefix += commonPrefix(tokens.get(i), tokens.get(i + 1));
+			distantPrefix += commonPrefix(tokens.get(i), tokens.get(i + half));
+		}
+		successivePrefix /= half;
+		distantPrefix /= half;
+		details.add("Average common prefix of successive tokens: " + String.format("%.3f", successivePrefix)
+				+ " (" + String.format("%.3f", distantPrefix) + " for distant tokens)");
+		if (successivePrefix >= distantPrefix + 1 && successivePrefix >= distantPrefix * 2) {
+			issues.add("Successive tokens share longer prefixes (" + String.format("%.3f", successivePrefix)
+					+ ") than distant tokens (" + String.format("%.3f", distantPrefix) + ")");
+			res = worst(res, Result.LOW);
+		}
+
+		result.setResult(res);
+		result.setDetails(details);
+		result.setFailures(issues);
+		return result;
+	}
+
+	/**
+	 * Checks the correlation between the time each token was requested and the value of the token and of each of
+	 * its characters.
+	 */
+	public TokenAnalysisTestResult checkTimestampCorrelation() {
+		TokenAnalysisTestResult result = new TokenAnalysisTestResult(TokenAnalysisTestResult.Type.TIMESTAMP_CORRELATION);
+		List<String> tokens = cfm.getTokens();
+		List<Long> timestamps = cfm.getTimestamps();
+		int size = tokens.size();
+		if (timestamps.size() != size) {
+			result.setResult(Result.MEDIUM);
+			result.setSummary(messages.getString("tokengen.analyse.summary.notimings"));
+			return result;
+		}
+		if (size < 3) {
+			return notEnoughData(result);
+		}
+		List<String> details = new ArrayList<>();
+		List<String> issues = new ArrayList<>();
+		Result res = Result.PASS;
+
+		// Only the most significant bits of the tokens fit in a double, which is where a time prefix would be
+		List<BigInteger> values = getNumericTokens();
+		int bitLength = 0;
+		if (values != null) {
+			for (BigInteger value : values) {
+				bitLength = Math.max(bitLength, value.bitLength());
+			}
+		}
+		int shift = Math.max(0, bitLength - 53);
+		long firstTimestamp = timestamps.get(0);
+
+		Correlation tokenCorrelation = new Correlation();
+		List<Correlation> charCorrelations = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			double time = timestamps.get(i) - firstTimestamp;
+			if (values != null) {
+				tokenCorrelation.add(time, values.get(i).shiftRight(shift).doubleValue());
+			}
+			String token = tokens.get(i);
+			for (int j = 0; j < token.length(); j++) {
+				if (j == charCorrelations.size()) {
+					charCorrelations.add(new Correlation());
+				}
+				charCorrelations.get(j).add(time, token.charAt(j));
+			}
+		}
+
+		if (values != null) {
+			res = checkCorrelation("Token value", tokenCorrelation, details, issues, res);
+		} else {
+			// The characters are still checked, eg the digits of tokens with a decimal point
+			details.add("Token value: not numeric");
+		}
+		for (int i = 0; i < charCorrelations.size(); i++) {
+			res = checkCorrelation("Col " + i, charCorrelations.get(i), details, issues, res);
+		}
+
+		result.setResult(res);
+		result.setDetails(details);
+		result.setFailures(issues);
+		return result;
+	}
+
+	private static Result checkCorrelation(String name, Correlation correlation, List<String> details,
+			List<String> issues, Result res) {
+		double r = correlation.getCoefficient();
+		details.add(name + " " + String.format("%.3f", r));
+		// Fisher approximation, r * sqrt(n - 1) is roughly normal for uncorrelated values
+		double z = Math.abs(r) * Math.sqrt(correlation.n - 1);
+		if (z > Z_FAIL && Math.abs(r) >= 0.5) {
+			issues.add(name + " is strongly correlated with the time the token was requested: " + String.format("%.3f", r));
+			return worst(res, Result.FAIL);
+		} else if (z > Z_LOW) {
+			issues.add(name + " is correlated with the time the token was requested: " + String.format("%.3f", r));
+			return worst(res, Result.LOW);
+		}
+		return res;
+	}
+
+	/**
+	 * Checks for substrings which appear in many of the tokens, ignoring the positions which never change.
+	 */
+	public TokenAnalysisTestResult checkRepeatedNgrams() {
+		TokenAnalysisTestResult result = new TokenAnalysisTestResult(TokenAnalysisTestResult.Type.REPEATED_NGRAMS);
+		List<String> tokens = cfm.getTokens();
+		int size = tokens.size();
+		int length = ngramLength(size);
+		if (size < 3 || length > cfm.getEntropyEstimator().getNumberOfPositions()) {
+			return notEnoughData(result);
+		}
+		List<String> details = new ArrayList<>();
+		List<String> issues = new ArrayList<>();
+
+		double[] entropies = cfm.getEntropyEstimator().getEntropies(TokenEntropyEstimator.Estimator.SHANNON);
+		// Number of constant positions up to (and excluding) each position, to skip fixed parts of the tokens
+		int[] constantPosns = new int[entropies.length + 1];
+		for (int i = 0; i < entropies.length; i++) {
+			constantPosns[i + 1] = constantPosns[i] + (entropies[i] == 0 ? 1 : 0);
+		}
+
+		Map<String, Ngram> ngrams = new HashMap<>();
+		for (int t = 0; t < size; t++) {
+			String token = tokens.get(t);
+			for (int i = length - 1; i < token.length(); i++) {
+				int start = i - length + 1;
+				if (constantPosns[i + 1] - constantPosns[start] == length) {
+					continue;
+				}
+				String value = token.substring(start, i + 1);
+				Ngram ngram = ngrams.get(value);
+				if (ngram == null) {
+					ngrams.put(value, new Ngram(value, t));
+				} else if (ngram.lastToken != t) {
+					// Only count each token once
+					ngram.lastToken = t;
+					ngram.tokens++;
+				}
+			}
+		}
+
+		// With the n-gram length used it is unlikely that any of them would be in more than a couple of tokens
+		int threshold = Math.max(3, size / 100);
+		List<Ngram> repeated = new ArrayList<>();
+		for (Ngram ngram : ngrams.values()) {
+			if (ngram.tokens >= threshold) {
+				repeated.add(ngram);
+			}
+		}
+		Collections.sort(repeated, new Comparator<Ngram>() {
+			@Override
+			public int compare(Ngram n1, Ngram n2) {
+				return n2.tokens - n1.tokens;
+			}
+		});
+
+		details.add("Substring length: " + length);
+		details.add("Distinct substrings: " + ngrams.size());
+		details.add("Substrings in at least " + threshold + " tokens: " + repeated.size());
+		for (int i = 0; i < repeated.size() && i < MAX_REPORTED_NGRAMS; i++) {
+			Ngram ngram = repeated.get(i);
+			issues.add("Substring " + ngram.value + " appears in " + ngram.tokens + " of " + size + " tokens");
+		}
+
+		Result res = Result.PASS;
+		if (!repeated.isEmpty()) {
+			double ratio = (double) repeated.get(0).tokens / size;
+			if (ratio >= 0.5) {
+				res = Result.FAIL;
+			} else if (ratio >= 0.1) {
+				res = Result.LOW;
+			} else {
+				res = Result.MEDIUM;
+			}
+		}
+		result.setResult(res);
+		result.setDetails(details);
+		result.setFailures(issues);
+		return result;
+	}
+
+	/**
+	 * Returns the length of the n-grams to check, long enough that random n-grams are unlikely to be repeated in
+	 * the sample.
+	 */
+	private int ngramLength(int size) {
+		int chars = Math.max(2, cfm.numberOfChars());
+		double combinations = 100.0 * size * Math.max(1, cfm.getEntropyEstimator().getNumberOfPositions());
+		return Math.max(3, (int) Math.ceil(Math.log(combinations) / Math.log(chars)));
+	}
+
+	/**
+	 * Returns the numeric values of the tokens, or {@code null} if any of the tokens is not a number. The
+	 * characters of the tokens alone don't tell, eg "12.5", "1-2" and "" only have decimal characters.
+	 */
+	private List<BigInteger> getNumericTokens() {
+		int size = cfm.getTokens().size();
+		List<BigInteger> values = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			BigInteger value;
+			try {
+				value = cfm.getBigIntegerToken(i);
+			} catch (NumberFormatException e) {
+				return null;
+			}
+			if (value == null) {
+				return null;
+			}
+			values.add(value);
+		}
+		return values;
+	}
+
+	private TokenAnalysisTestResult notEnoughData(TokenAnalysisTestResult result) {
+		result.setResult(Result.MEDIUM);
+		result.setSummary(messages.getString("tokengen.analyse.summary.insufficient"));
+		return result;
+	}
+
+	private static Result worst(Result r1, Result r2) {
+		return r1.ordinal() < r2.ordinal() ? r1 : r2;
+	}
+
+	private static int commonPrefix(String s1, String s2) {
+		int max = Math.min(s1.length(), s2.length());
+		int i = 0;
+		while (i < max && s1.charAt(i) == s2.charAt(i)) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Pearson correlation coefficient, computed incrementally (Welford's method, to avoid cancellation errors).
+	 */
+	private static class Correlation {
+
+		private int n;
+		private double meanX;
+		private double meanY;
+		private double m2X;
+		private double m2Y;
+		private double coMoment;
+
+		void add(double x, double y) {
+			n++;
+			double dx = x - meanX;
+			meanX += dx / n;
+			double dy = y - meanY;
+			meanY += dy / n;
+			m2X += dx * (x - meanX);
+			m2Y += dy * (y - meanY);
+			coMoment += dx * (y - meanY);
+		}
+
+		double getCoefficient() {
+			if (m2X <= 0 || m2Y <= 0) {
+				// One of them is constant
+				return 0;
+			}
+			return coMoment / Math.sqrt(m2X * m2Y);
+		}
+	}
+
+	private static class Ngram {
+
+		private final String value;
+		private int lastToken;
+		private int tokens = 1;
+
+		Ngram(String value, int token) {
+			this.value = value;
+			this.lastToken = token;
+		}
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ *
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zaproxy.zap.extension.tokengen;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates the entropy of each character position of the tokens, based on how often each character was seen in
+ * that position.
+ * <p>
+ * Unlike {@link CharacterFrequencyMap#getMaxTheoreticalEntropy()}, which only counts the distinct characters, the
+ * estimators take into account how skewed the character frequencies are. The sums needed by the estimators are
+ * updated as each token is added, so getting the current estimates is cheap enough to be done while the tokens
+ * are still being generated.
+ * <p>
+ * The aggregate values are the sum of the per position values, which assumes that the positions are independent,
+ * so they are an upper bound of the real entropy of the tokens.
+ */
+public class TokenEntropyEstimator {
+
+	public enum Estimator {
+		/** The Shannon entropy, the average number of bits of uncertainty. */
+		SHANNON,
+		/** The min-entropy, based on the probability of guessing the most likely character. */
+		MIN,
+		/** The collision (Renyi order 2) entropy, based on the probability of two characters being the same. */
+		COLLISION
+	}
+
+	private static final double LN_2 = Math.log(2);
+
+	private final List<Column> columns = new ArrayList<>();
+
+	public synchronized void addToken(String token) {
+		for (int i = 0; i < token.length(); i++) {
+			if (i == columns.size()) {
+				columns.add(new Column());
+			}
+			columns.get(i).add(token.charAt(i));
+		}
+	}
+
+	public synchronized int getNumberOfPositions() {
+		return columns.size();
+	}
+
+	/**
+	 * Returns the entropy, in bits, of the given character position.
+	 */
+	public synchronized double getEntropy(Estimator estimator, int position) {
+		return columns.get(position).getEntropy(estimator);
+	}
+
+	/**
+	 * Returns the entropy, in bits, of each character position.
+	 */
+	public synchronized double[] getEntropies(Estimator estimator) {
+		double[] entropies = new double[columns.size()];
+		for (int i = 0; i < entropies.length; i++) {
+			entropies[i] = columns.get(i).getEntropy(estimator);
+		}
+		return entropies;
+	}
+
+	/**
+	 * Returns the aggregate entropy, in bits, of all the character positions.
+	 */
+	public synchronized double getTotalEntropy(Estimator estimator) {
+		double entropy = 0;
+		for (Column column : columns) {
+			entropy += column.getEntropy(estimator);
+		}
+		return entropy;
+	}
+
+	private static double log2(double value) {
+		return Math.log(value) / LN_2;
+	}
+
+	private static double xLog2x(int value) {
+		if (value == 0) {
+			return 0;
+		}
+		return value * log2(value);
+	}
+
+	/**
+	 * The character counts of one position, along with the running sums the estimators are computed from.
+	 */
+	private static class Column {
+
+		private final Map<Character, int[]> counts = new HashMap<>();
+		private int total;
+		private int maxCount;
+		// Sum of count * log2(count) for all characters
+		private double sumCountLog;
+		// Sum of count^2 for all characters
+		private long sumSquares;
+
+		void add(char chr) {
+			int[] count = counts.get(chr);
+			if (count == null) {
+				count = new int[1];
+				counts.put(chr, count);
+			}
+			int previous = count[0]++;
+			total++;
+			if (count[0] > maxCount) {
+				maxCount = count[0];
+			}
+			sumCountLog += xLog2x(count[0]) - xLog2x(previous);
+			sumSquares += 2L * previous + 1;
+		}
+
+		double getEntropy(Estimator estimator) {
+			if (total == 0) {
+				return 0;
+			}
+			double entropy;
+			switch (estimator) {
+			case SHANNON:
+				entropy = log2(total) - sumCountLog / total;
+				break;
+			case MIN:
+				entropy = log2(total) - log2(maxCount);
+				break;
+			case COLLISION:
+				entropy = 2 * log2(total) - log2(sumSquares);
+				break;
+			default:
+				entropy = 0;
+			}
+			// Avoid reporting rounding errors as (tiny) negative values
+			return Math.max(0, entropy);
+		}
+	}
+}
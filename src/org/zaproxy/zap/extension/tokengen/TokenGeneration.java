@@ -0,0 +1,223 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.tokengen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.parosproxy.paros.model.Model;
+import org.parosproxy.paros.network.HttpHeader;
+import org.parosproxy.paros.network.HttpMessage;
+import org.parosproxy.paros.network.HttpSender;
+import org.zaproxy.zap.extension.params.HtmlParameterStats;
+
+/**
+ * A run of token generation: sends the same request a number of times, from several threads, and collects the
+ * tokens returned.
+ * <p>
+ * It does not depend on the UI, the tokens are reported to the registered {@link TokenGenerationListenner}s and
+ * collected in a {@link CharacterFrequencyMap}, which can then be analysed with
+ * {@link ExtensionTokenGen#analyseTokens(CharacterFrequencyMap)}. Any number of runs can be active at the same time.
+ */
+public class TokenGeneration {
+
+	private static final AtomicInteger RUN_COUNTER = new AtomicInteger();
+
+	private final ExtensionTokenGen extension;
+	private final HttpMessage httpMessage;
+	private final int numberTokens;
+	private final HtmlParameterStats targetToken;
+	private final int numberThreads;
+	private final CharacterFrequencyMap cfm = new CharacterFrequencyMap();
+	private final List<TokenGenerator> generators = new ArrayList<>();
+	private final List<TokenGenerationListenner> listenners = new CopyOnWriteArrayList<>();
+	private final AtomicInteger requestsSent = new AtomicInteger();
+	private final AtomicInteger runningGenerators = new AtomicInteger();
+	private HttpSender httpSender = null;
+	private final CountDownLatch finished = new CountDownLatch(1);
+	private volatile boolean started = false;
+	private volatile boolean stopped = false;
+	private volatile boolean paused = false;
+
+	private static Logger log = Logger.getLogger(TokenGeneration.class);
+
+	TokenGeneration(ExtensionTokenGen extension, HttpMessage httpMessage, int numberTokens,
+			HtmlParameterStats targetToken, int numberThreads) {
+		this.extension = extension;
+		this.httpMessage = httpMessage;
+		this.numberTokens = numberTokens;
+		this.targetToken = targetToken;
+		this.numberThreads = Math.max(1, Math.min(numberThreads, numberTokens));
+	}
+
+	public void addListenner(TokenGenerationListenner listenner) {
+		this.listenners.add(listenner);
+	}
+
+	public void removeListenner(TokenGenerationListenner listenner) {
+		this.listenners.remove(listenner);
+	}
+
+	synchronized void start() {
+		if (started) {
+			return;
+		}
+		started = true;
+		log.debug("start " + httpMessage.getRequestHeader().getURI() + " # " + numberTokens);
+
+		if (numberTokens <= 0) {
+			finished();
+			return;
+		}
+
+		// Built once for all the generators, the cookies are removed so that each request gets a new token
+		HttpMessage requestTemplate = httpMessage.cloneRequest();
+		requestTemplate.getRequestHeader().setHeader(HttpHeader.COOKIE, null);
+
+		// The sender's connections are pooled and shared by all the generators
+		//TODO: is HttpSender.ACTIVE_SCANNER_INITIATOR really the right option here??
+		httpSender = new HttpSender(Model.getSingleton().getOptionsParam().getConnectionParam(), true, 
+				HttpSender.ACTIVE_SCANNER_INITIATOR);
+
+		int run = RUN_COUNTER.incrementAndGet();
+		for (int i = 0; i < numberThreads; i++) {
+			TokenGenerator gen = new TokenGenerator();
+			gen.setName("ZAP-TokenGen-" + run + "-" + i);
+			gen.setGeneration(this);
+			gen.setRequestTemplate(requestTemplate);
+			gen.setHttpSender(httpSender);
+			// Spread the remainder over the first generators
+			gen.setNumberTokens(numberTokens / numberThreads + (i < numberTokens % numberThreads ? 1 : 0));
+			gen.setPaused(paused);
+			generators.add(gen);
+		}
+		runningGenerators.set(generators.size());
+		for (TokenGenerator gen : generators) {
+			gen.start();
+		}
+	}
+
+	void tokenReceived(HttpMessage msg) {
+		String token = extension.extractToken(msg, targetToken);
+		if (token != null) {
+			cfm.addToken(token, msg.getTimeSentMillis());
+			msg.setNote(token);
+		}
+		requestsSent.incrementAndGet();
+
+		MessageSummary summary = new MessageSummary(msg);
+		for (TokenGenerationListenner listenner : listenners) {
+			try {
+				listenner.tokenGenerated(this, summary);
+			} catch (Exception e) {
+				log.error(e.getMessage(), e);
+			}
+		}
+	}
+
+	void generatorStopped(TokenGenerator gen) {
+		int running = runningGenerators.decrementAndGet();
+		log.debug("generatorStopped runningGenerators " + running);
+		if (running == 0) {
+			finished();
+		}
+	}
+
+	private void finished() {
+		if (httpSender != null) {
+			httpSender.shutdown();
+		}
+		finished.countDown();
+		for (TokenGenerationListenner listenner : listenners) {
+			try {
+				listenner.generationFinished(this);
+			} catch (Exception e) {
+				log.error(e.getMessage(), e);
+			}
+		}
+	}
+
+	public synchronized void stop() {
+		this.stopped = true;
+		for (TokenGenerator gen : generators) {
+			gen.stopGenerating();
+		}
+	}
+
+	public synchronized void setPaused(boolean paused) {
+		this.paused = paused;
+		for (TokenGenerator gen : generators) {
+			gen.setPaused(paused);
+		}
+	}
+
+	public boolean isPaused() {
+		return paused;
+	}
+
+	/**
+	 * Tells whether or not the generation was stopped before all the tokens were generated.
+	 */
+	public boolean isStopped() {
+		return stopped;
+	}
+
+	public boolean isRunning() {
+		return started && finished.getCount() > 0;
+	}
+
+	/**
+	 * Waits for the generation to finish.
+	 *
+	 * @return {@code true} if it finished, {@code false} if the timeout elapsed first
+	 */
+	public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+		return finished.await(timeout, unit);
+	}
+
+	public HttpMessage getHttpMessage() {
+		return httpMessage;
+	}
+
+	public HtmlParameterStats getTargetToken() {
+		return targetToken;
+	}
+
+	public int getNumberTokens() {
+		return numberTokens;
+	}
+
+	/**
+	 * Returns the number of requests sent so far, including the ones whose response did not contain the token.
+	 */
+	public int getProgress() {
+		return requestsSent.get();
+	}
+
+	/**
+	 * Returns the tokens collected so far.
+	 */
+	public CharacterFrequencyMap getCharacterFrequencyMap() {
+		return cfm;
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.tokengen;
+
+/**
+ * Notified of the progress of a {@link TokenGeneration}. The methods are called from the generator threads, not the
+ * EDT.
+ */
+public interface TokenGenerationListenner {
+
+	/**
+	 * Called for each response received, the token of the summary is {@code null} if it was not found.
+	 */
+	public void tokenGenerated(TokenGeneration generation, MessageSummary summary);
+
+	/**
+	 * Called once all the generator threads have finished, either because all the tokens were generated or because
+	 * the generation was stopped.
+	 */
+	public void generationFinished(TokenGeneration generation);
+
+}
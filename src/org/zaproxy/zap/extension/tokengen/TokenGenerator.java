@@ -17,81 +17,78 @@
  */
 package org.zaproxy.zap.extension.tokengen;
 
-import javax.swing.SwingWorker;
-
 import org.apache.log4j.Logger;
-import org.parosproxy.paros.model.Model;
 import org.parosproxy.paros.network.HttpHeader;
 import org.parosproxy.paros.network.HttpMessage;
 import org.parosproxy.paros.network.HttpSender;
-import org.zaproxy.zap.extension.params.HtmlParameterStats;
 
-public class TokenGenerator extends SwingWorker<Void, Void> {
+public class TokenGenerator extends Thread {
 	
 	private int numberTokens = 0;
-	private HttpMessage httpMessage = null;
+	private HttpMessage requestTemplate = null;
 	private HttpSender httpSender = null;
-	private HtmlParameterStats targetToken = null;
-	private ExtensionTokenGen extension = null;
-	private boolean stopGenerating = false;
-	private boolean paused = false;
+	private TokenGeneration generation = null;
+	private volatile boolean stopGenerating = false;
+	private volatile boolean paused = false;
     private static Logger log = Logger.getLogger(TokenGenerator.class);
 
-	private HttpSender getHttpSender() {
-		if (httpSender == null) {
-			//TODO: is HttpSender.ACTIVE_SCANNER_INITIATOR really the right option here??
-			httpSender = new HttpSender(Model.getSingleton().getOptionsParam().getConnectionParam(), true, HttpSender.ACTIVE_SCANNER_INITIATOR);
-		}
-		return httpSender;
-	}
-
 	@Override
-	protected Void doInBackground() throws Exception {
-		for (int i=0; i < numberTokens; i++) {
-			while (paused && ! this.stopGenerating) {
+	public void run() {
+		try {
+			for (int i=0; i < numberTokens; i++) {
+				while (paused && ! this.stopGenerating) {
+					try {
+						Thread.sleep (500);
+					} catch (InterruptedException e) {
+						// Ignore
+					}
+				}
+				if (this.stopGenerating) {
+					break;
+				}
+	
+				// A new message for each token, the sender updates the request header with the one sent (for
+				// example, with the cookies and the redirections followed)
+				HttpMessage msg = this.requestTemplate.cloneRequest();
+	
 				try {
-					Thread.sleep (500);
-				} catch (InterruptedException e) {
-					// Ignore
+					msg.getRequestHeader().setHeader(HttpHeader.COOKIE, null);
+					this.httpSender.sendAndReceive(msg, true);
+				} catch (Exception e) {
+					log.error(e.getMessage(), e);
 				}
+				this.generation.tokenReceived(msg);
 			}
-			if (this.stopGenerating) {
-				break;
-			}
-
-			HttpMessage msg = this.httpMessage.cloneRequest();
-
-			try {
-				msg.getRequestHeader().setHeader(HttpHeader.COOKIE, null);
-				this.getHttpSender().sendAndReceive(msg, true);
-			} catch (Exception e) {
-				log.error(e.getMessage(), e);
-			}
-			this.extension.addTokenResult(msg, targetToken);
+		} finally {
+			this.generation.generatorStopped(this);
 		}
-		this.extension.generatorStopped(this);
-
-		return null;
 	}
 
 	public void setNumberTokens(int numberTokens) {
 		this.numberTokens = numberTokens;
 	}
 
-	public void setHttpMessage(HttpMessage httpMessage) {
-		this.httpMessage = httpMessage;
+	/**
+	 * Sets the request to send, shared by all the generators of a generation. It's cloned for each token, without
+	 * the cookies, so it is not modified by the requests sent.
+	 */
+	public void setRequestTemplate(HttpMessage requestTemplate) {
+		this.requestTemplate = requestTemplate;
 	}
 
-	public void setTargetToken(HtmlParameterStats targetToken) {
-		this.targetToken = targetToken;
+	/**
+	 * Sets the sender used to send the requests, shared by all the generators of a generation.
+	 */
+	public void setHttpSender(HttpSender httpSender) {
+		this.httpSender = httpSender;
 	}
 
 	public void stopGenerating() {
 		this.stopGenerating = true;
 	}
 
-	public void setExtension(ExtensionTokenGen extension) {
-		this.extension = extension;
+	public void setGeneration(TokenGeneration generation) {
+		this.generation = generation;
 	}
 
 	public boolean isPaused() {
@@ -20,13 +20,11 @@
 package org.zaproxy.zap.extension.tokengen;
 
 import java.awt.CardLayout;
-import java.awt.EventQueue;
 import java.awt.GridBagConstraints;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
 
-import javax.swing.DefaultListModel;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JFileChooser;
@@ -40,6 +38,8 @@ import javax.swing.JToggleButton;
 import javax.swing.JToolBar;
 import javax.swing.ListCellRenderer;
 import javax.swing.SwingUtilities;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
 
 import org.apache.log4j.Logger;
 import org.parosproxy.paros.extension.AbstractPanel;
@@ -59,7 +59,7 @@ public class TokenPanel extends AbstractPanel {
 	private JToolBar panelToolbar = null;
 	private JScrollPane jScrollPane = null;
     private TokenPanelCellRenderer portPanelCellRenderer = null;
-	private DefaultListModel<MessageSummary> resultsModel  = new DefaultListModel<MessageSummary>();
+	private TokenResultsListModel resultsModel  = new TokenResultsListModel();
 	private JTextPane initialMessage = null;
 
 	private JButton stopScanButton = null;
@@ -314,31 +314,33 @@ public class TokenPanel extends AbstractPanel {
 	}
 
 	private void resetTokenResultList() {
-		resultsModel = new DefaultListModel<>();
+		resultsModel.dispose();
+		resultsModel = new TokenResultsListModel();
+		// The progress is updated once per batch of results rather than once per token
+		resultsModel.addListDataListener(new ListDataListener() {
+			@Override
+			public void intervalAdded(ListDataEvent e) {
+				getProgressBar().setValue(resultsModel.getSize());
+			}
+
+			@Override
+			public void intervalRemoved(ListDataEvent e) {
+			}
+
+			@Override
+			public void contentsChanged(ListDataEvent e) {
+			}
+		});
 		getTokenResultList().setModel(resultsModel);
 	}
 	
 	public int getTokenResultsSize() {
-		return this.resultsModel.getSize();
+		return this.resultsModel.getTotalSize();
 	}
 	
 	protected void addTokenResult(final MessageSummary msg) {
-		
-		if (EventQueue.isDispatchThread()) {
-			resultsModel.addElement(msg);
-			getProgressBar().setValue(getProgressBar().getValue() + 1);
-		    return;
-		}
-		try {
-			EventQueue.invokeLater(new Runnable() {
-				@Override
-				public void run() {
-					resultsModel.addElement(msg);
-					getProgressBar().setValue(getProgressBar().getValue() + 1);
-				}
-			});
-		} catch (Exception e) {
-		}
+		// Results are batched by the model and published on the EDT periodically
+		resultsModel.addElement(msg);
 	}
 
 	private JList<MessageSummary> getTokenResultList() {
@@ -510,6 +512,7 @@ public class TokenPanel extends AbstractPanel {
 	}
 
 	public void scanFinshed() {
+		resultsModel.flushAndWait();
 		getStopScanButton().setEnabled(false);
 		getPauseScanButton().setEnabled(false);
 		getPauseScanButton().setSelected(false);
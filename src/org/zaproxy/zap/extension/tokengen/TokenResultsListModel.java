@@ -0,0 +1,147 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ *
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zaproxy.zap.extension.tokengen;
+
+import java.awt.EventQueue;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.AbstractListModel;
+import javax.swing.Timer;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A list model for the generated tokens which can be appended to from any thread.
+ * <p>
+ * Added rows are queued and moved into the model on the EDT in batches, at most once every
+ * {@link #FLUSH_INTERVAL_MS} milliseconds, so that a single {@code intervalAdded} event is fired per batch
+ * rather than one {@code invokeLater} per token.
+ */
+public class TokenResultsListModel extends AbstractListModel<MessageSummary> {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final int FLUSH_INTERVAL_MS = 100;
+
+	private static Logger log = Logger.getLogger(TokenResultsListModel.class);
+
+	private final List<MessageSummary> rows = new ArrayList<>();
+	private final ConcurrentLinkedQueue<MessageSummary> pending = new ConcurrentLinkedQueue<>();
+	// The rows in the model plus the queued ones, read from any thread
+	private final AtomicInteger totalCount = new AtomicInteger();
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+	private final Timer flushTimer;
+
+	public TokenResultsListModel() {
+		flushTimer = new Timer(FLUSH_INTERVAL_MS, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				flush();
+			}
+		});
+		flushTimer.setRepeats(false);
+	}
+
+	/**
+	 * Queues the given row, it will be shown on the next flush. Can be called from any thread.
+	 */
+	public void addElement(MessageSummary msg) {
+		pending.add(msg);
+		totalCount.incrementAndGet();
+		if (flushScheduled.compareAndSet(false, true)) {
+			flushTimer.start();
+		}
+	}
+
+	/**
+	 * Moves all the queued rows into the model, firing a single event. Must be called on the EDT.
+	 */
+	public void flush() {
+		flushScheduled.set(false);
+		int first = rows.size();
+		MessageSummary msg;
+		while ((msg = pending.poll()) != null) {
+			rows.add(msg);
+		}
+		if (rows.size() > first) {
+			fireIntervalAdded(this, first, rows.size() - 1);
+		}
+	}
+
+	/**
+	 * Flushes the queued rows on the EDT, waiting if called from another thread. If interrupted while waiting the
+	 * rows are still flushed, later, and the interrupt status is restored.
+	 */
+	public void flushAndWait() {
+		if (EventQueue.isDispatchThread()) {
+			flush();
+			return;
+		}
+		try {
+			EventQueue.invokeAndWait(new Runnable() {
+				@Override
+				public void run() {
+					flush();
+				}
+			});
+		} catch (InvocationTargetException e) {
+			log.error("Failed to flush the token results: " + e.getCause().getMessage(), e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Stops any pending flush, the queued rows are discarded.
+	 */
+	public void dispose() {
+		flushTimer.stop();
+		while (pending.poll() != null) {
+			totalCount.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Returns the number of rows, including the ones not yet flushed. Can be called from any thread.
+	 */
+	public int getTotalSize() {
+		return totalCount.get();
+	}
+
+	@Override
+	public int getSize() {
+		return rows.size();
+	}
+
+	@Override
+	public MessageSummary getElementAt(int index) {
+		return rows.get(index);
+	}
+
+	public MessageSummary get(int index) {
+		return rows.get(index);
+	}
+
+}
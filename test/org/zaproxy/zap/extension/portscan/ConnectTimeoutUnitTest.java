@@ -0,0 +1,101 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.portscan;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ConnectTimeoutUnitTest {
+
+	@Test
+	public void shouldUseConfiguredTimeoutIfNotAdaptive() {
+		// Given
+		ConnectTimeout timeout = new ConnectTimeout(2000, false);
+		// When
+		addRoundTripTimes(timeout, 20, 10);
+		// Then
+		assertEquals(2000, timeout.getTimeoutInMs());
+	}
+
+	@Test
+	public void shouldNotAllowNegativeTimeout() {
+		// Given / When
+		ConnectTimeout timeout = new ConnectTimeout(-1, true);
+		// Then
+		assertEquals(0, timeout.getTimeoutInMs());
+	}
+
+	@Test
+	public void shouldUseConfiguredTimeoutUntilEnoughSamples() {
+		// Given
+		ConnectTimeout timeout = new ConnectTimeout(2000, true);
+		// When
+		addRoundTripTimes(timeout, 100, 7);
+		// Then
+		assertEquals(2000, timeout.getTimeoutInMs());
+	}
+
+	@Test
+	public void shouldLearnTimeoutFromRoundTripTimes() {
+		// Given
+		ConnectTimeout timeout = new ConnectTimeout(2000, true);
+		// When
+		addRoundTripTimes(timeout, 100, 8);
+		// Then
+		// srtt stays 100 and rttvar decays from 50 by 0.75 on each of the 7 further samples
+		int expected = (int) Math.ceil(100 + 4 * 50 * Math.pow(0.75, 7));
+		assertEquals(expected, timeout.getTimeoutInMs());
+	}
+
+	@Test
+	public void shouldNotExceedConfiguredTimeout() {
+		// Given
+		ConnectTimeout timeout = new ConnectTimeout(500, true);
+		// When
+		addRoundTripTimes(timeout, 1000, 10);
+		// Then
+		assertEquals(500, timeout.getTimeoutInMs());
+	}
+
+	@Test
+	public void shouldNotGoBelowMinimumTimeout() {
+		// Given
+		ConnectTimeout timeout = new ConnectTimeout(2000, true);
+		// When
+		addRoundTripTimes(timeout, 0, 20);
+		// Then
+		assertEquals(50, timeout.getTimeoutInMs());
+	}
+
+	@Test
+	public void shouldLearnTimeoutWithoutConfiguredTimeout() {
+		// Given
+		ConnectTimeout timeout = new ConnectTimeout(0, true);
+		// When
+		addRoundTripTimes(timeout, 3000, 8);
+		// Then
+		assertEquals((int) Math.ceil(3000 + 4 * 1500 * Math.pow(0.75, 7)), timeout.getTimeoutInMs());
+	}
+
+	private static void addRoundTripTimes(ConnectTimeout timeout, long rtt, int count) {
+		for (int i = 0; i < count; i++) {
+			timeout.addRoundTripTime(rtt);
+		}
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.portscan;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class PortSetUnitTest {
+
+	@Test
+	public void shouldBeEmptyWhenCreated() {
+		// Given / When
+		PortSet set = new PortSet();
+		// Then
+		assertEquals(0, set.size());
+		assertEquals(0, set.toArray().length);
+		assertFalse(set.contains(80));
+	}
+
+	@Test
+	public void shouldAddPortsOnlyOnce() {
+		// Given
+		PortSet set = new PortSet();
+		// When
+		boolean first = set.add(443);
+		boolean second = set.add(443);
+		// Then
+		assertTrue(first);
+		assertFalse(second);
+		assertEquals(1, set.size());
+		assertTrue(set.contains(443));
+		assertFalse(set.contains(442));
+		assertFalse(set.contains(444));
+	}
+
+	@Test
+	public void shouldReturnPortsInAscendingOrderIncludingBounds() {
+		// Given
+		PortSet set = new PortSet();
+		// When
+		set.add(65535);
+		set.add(64);
+		set.add(0);
+		set.add(63);
+		set.add(8080);
+		// Then
+		assertArrayEquals(new int[] { 0, 63, 64, 8080, 65535 }, set.toArray());
+	}
+
+	@Test
+	public void shouldRecreateSetFromWords() {
+		// Given
+		PortSet set = new PortSet();
+		set.add(1);
+		set.add(22);
+		set.add(65000);
+		// When
+		PortSet copy = new PortSet(set.toWords());
+		// Then
+		assertArrayEquals(set.toArray(), copy.toArray());
+		assertEquals(1024, set.toWords().length);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectWordsOfWrongLength() {
+		new PortSet(new long[1023]);
+	}
+
+	@Test
+	public void shouldNotLoseConcurrentAdds() throws Exception {
+		// Given
+		final PortSet set = new PortSet();
+		final int threads = 8;
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] adders = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int offset = t;
+			adders[t] = new Thread() {
+
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					// Interleaved ports, so the threads contend for the same words
+					for (int port = offset; port < 65536; port += threads) {
+						set.add(port);
+					}
+				}
+			};
+			adders[t].start();
+		}
+		// When
+		start.countDown();
+		for (Thread adder : adders) {
+			adder.join();
+		}
+		// Then
+		assertEquals(65536, set.size());
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.portscan;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class UdpPayloadsUnitTest {
+
+	@Test
+	public void shouldSendWellFormedDnsQueryForRootNameServers() {
+		// Given / When
+		byte[] query = UdpPayloads.getPayload(53);
+		// Then
+		// 12 bytes of header and 5 bytes of question
+		assertEquals(17, query.length);
+		// One question, no answer, authority or additional records
+		assertArrayEquals(new byte[] { 0, 1, 0, 0, 0, 0, 0, 0 }, Arrays.copyOfRange(query, 4, 12));
+		// Root name, QTYPE NS, QCLASS IN
+		assertArrayEquals(new byte[] { 0, 0, 2, 0, 1 }, Arrays.copyOfRange(query, 12, 17));
+		assertEquals(UdpPayloads.DNS, UdpPayloads.getService(53));
+		assertArrayEquals(query, UdpPayloads.getPayload(5353));
+	}
+
+	@Test
+	public void shouldSendSnmpRequestWithConsistentLength() {
+		// Given / When
+		byte[] request = UdpPayloads.getPayload(161);
+		// Then
+		// The length of the outer sequence covers the rest of the datagram
+		assertEquals(request.length - 2, request[1]);
+	}
+
+	@Test
+	public void shouldSendLineBreakToOtherPorts() {
+		// Given / When
+		byte[] payload = UdpPayloads.getPayload(4444);
+		// Then
+		assertArrayEquals(new byte[] { '\r', '\n' }, payload);
+		assertNull(UdpPayloads.getService(4444));
+	}
+
+	@Test
+	public void shouldReturnPortsWithPayloadsInAscendingOrder() {
+		// Given / When
+		int[] ports = UdpPayloads.getPorts();
+		// Then
+		int[] sorted = ports.clone();
+		Arrays.sort(sorted);
+		assertArrayEquals(sorted, ports);
+		assertEquals(53, ports[Arrays.binarySearch(ports, 53)]);
+	}
+}
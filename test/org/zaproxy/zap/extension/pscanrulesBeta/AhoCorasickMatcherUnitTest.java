@@ -0,0 +1,129 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.pscanrulesBeta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class AhoCorasickMatcherUnitTest {
+
+	@Test
+	public void shouldNotMatchWithoutPatterns() {
+		// Given
+		AhoCorasickMatcher matcher = new AhoCorasickMatcher(Collections.<String> emptyList());
+		// When / Then
+		assertEquals(0, matcher.getPatternCount());
+		assertEquals(-1, matcher.findFirstPattern("any text"));
+		assertFalse(matcher.matches("any text"));
+	}
+
+	@Test
+	public void shouldIgnoreEmptyPatternsButCountThem() {
+		// Given
+		AhoCorasickMatcher matcher = new AhoCorasickMatcher(Arrays.asList("", "abc"));
+		// When / Then
+		assertEquals(2, matcher.getPatternCount());
+		assertEquals(-1, matcher.findFirstPattern("xyz"));
+		assertEquals(1, matcher.findFirstPattern("xabcx"));
+	}
+
+	@Test
+	public void shouldReturnMinusOneWhenNoPatternMatches() {
+		// Given
+		AhoCorasickMatcher matcher = new AhoCorasickMatcher(Arrays.asList("password", "secret"));
+		// When / Then
+		assertEquals(-1, matcher.findFirstPattern("passwor secre"));
+		assertFalse(matcher.matches("passwor secre"));
+		assertEquals(-1, matcher.findFirstPattern(""));
+	}
+
+	@Test
+	public void shouldIgnoreTheCase() {
+		// Given
+		AhoCorasickMatcher matcher = new AhoCorasickMatcher(Arrays.asList("PassWord"));
+		// When / Then
+		assertEquals(0, matcher.findFirstPattern("Your PASSWORD is"));
+		assertTrue(matcher.matches("your password is"));
+	}
+
+	@Test
+	public void shouldFindOverlappingPatterns() {
+		// Given
+		AhoCorasickMatcher matcher = new AhoCorasickMatcher(Arrays.asList("hers", "she", "he"));
+		// When / Then
+		// "ushers" contains all of them, overlapping
+		assertEquals(0, matcher.findFirstPattern("ushers"));
+		// "ushe" contains "she" and "he", ending at the same character
+		assertEquals(1, matcher.findFirstPattern("ushe"));
+		assertEquals(2, matcher.findFirstPattern("the"));
+	}
+
+	@Test
+	public void shouldFollowFailureLinksAfterPartialMatches() {
+		// Given
+		AhoCorasickMatcher matcher = new AhoCorasickMatcher(Arrays.asList("abcd", "bce"));
+		// When
+		// After "abc" the 'e' fails "abcd" and must continue from "bc", the longest suffix that's a prefix
+		int index = matcher.findFirstPattern("xabce");
+		// Then
+		assertEquals(1, index);
+	}
+
+	@Test
+	public void shouldFindPatternsContainedInOtherPatterns() {
+		// Given
+		AhoCorasickMatcher matcher = new AhoCorasickMatcher(Arrays.asList("abcdef", "cd"));
+		// When / Then
+		// The shorter pattern is only reachable through the failure links of the longer one
+		assertEquals(1, matcher.findFirstPattern("abcdx"));
+		assertTrue(matcher.matches("abcdx"));
+	}
+
+	@Test
+	public void shouldReturnTheLowestIndexNotTheEarliestPosition() {
+		// Given
+		AhoCorasickMatcher matcher = new AhoCorasickMatcher(Arrays.asList("zzz", "yyy", "xxx"));
+		// When
+		int index = matcher.findFirstPattern("xxx yyy zzz");
+		// Then
+		assertEquals(0, index);
+	}
+
+	@Test
+	public void shouldUseTheLowestIndexOfDuplicatedPatterns() {
+		// Given
+		AhoCorasickMatcher matcher = new AhoCorasickMatcher(Arrays.asList("other", "dup", "DUP"));
+		// When / Then
+		assertEquals(1, matcher.findFirstPattern("a DuP"));
+		assertEquals(1, matcher.findFirstPattern("dup"));
+	}
+
+	@Test
+	public void shouldMatchNonAsciiCharacters() {
+		// Given
+		AhoCorasickMatcher matcher = new AhoCorasickMatcher(Arrays.asList("été", "ascii"));
+		// When / Then
+		assertEquals(0, matcher.findFirstPattern("en ÉTÉ"));
+	}
+}
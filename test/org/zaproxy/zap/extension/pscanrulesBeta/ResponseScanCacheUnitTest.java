@@ -0,0 +1,115 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.pscanrulesBeta;
+
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class ResponseScanCacheUnitTest {
+
+	private static final long KEY = 42;
+
+	@Test
+	public void shouldSkipResponseScannedWithoutAlerts() {
+		// Given
+		ResponseScanCache cache = new ResponseScanCache();
+		ResponseScanCache.Scan scan = cache.begin(KEY, null);
+		// When
+		cache.end(scan);
+		// Then
+		assertNotNull(scan);
+		assertNull(cache.begin(KEY, null));
+		assertNotNull(cache.begin(KEY + 1, null));
+	}
+
+	@Test
+	public void shouldNotSkipResponseThatRaisedAlert() {
+		// Given
+		ResponseScanCache cache = new ResponseScanCache();
+		ResponseScanCache.Scan scan = cache.begin(KEY, null);
+		// When
+		ResponseScanCache.alertRaised();
+		cache.end(scan);
+		// Then
+		assertNotNull(cache.begin(KEY, null));
+	}
+
+	@Test
+	public void shouldNotSkipResponseWhenStateChanges() {
+		// Given
+		ResponseScanCache cache = new ResponseScanCache();
+		cache.end(cache.begin(KEY, "state"));
+		// When
+		ResponseScanCache.Scan scan = cache.begin(KEY, "other state");
+		// Then
+		assertNotNull(scan);
+	}
+
+	@Test
+	public void shouldForgetResponsesWhenStateChanges() {
+		// Given
+		ResponseScanCache cache = new ResponseScanCache();
+		cache.end(cache.begin(KEY, "state"));
+		cache.begin(KEY + 1, "other state");
+		// When
+		ResponseScanCache.Scan scan = cache.begin(KEY, "state");
+		// Then
+		assertNotNull(scan);
+	}
+
+	@Test
+	public void shouldNotRememberScanOfPreviousState() {
+		// Given
+		ResponseScanCache cache = new ResponseScanCache();
+		ResponseScanCache.Scan scan = cache.begin(KEY, "state");
+		cache.begin(KEY + 1, "other state");
+		// When
+		cache.end(scan);
+		// Then
+		assertNotNull(cache.begin(KEY, "other state"));
+	}
+
+	@Test
+	public void shouldSkipResponseWithEqualState() {
+		// Given
+		ResponseScanCache cache = new ResponseScanCache();
+		cache.end(cache.begin(KEY, new String("state")));
+		// When
+		ResponseScanCache.Scan scan = cache.begin(KEY, new String("state"));
+		// Then
+		assertNull(scan);
+	}
+
+	@Test
+	public void shouldMixSeedIntoHash() {
+		// Given
+		byte[] bytes = "text/html".getBytes(StandardCharsets.UTF_8);
+		// When
+		long hash = ResponseBodyView.hash(1, bytes, bytes.length);
+		long otherSeedHash = ResponseBodyView.hash(2, bytes, bytes.length);
+		long emptyHash = ResponseBodyView.hash(1, bytes, 0);
+		// Then
+		assertNotEquals(hash, otherSeedHash);
+		assertNotEquals(hash, emptyHash);
+	}
+}
@@ -0,0 +1,231 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.pscanrulesBeta;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Test;
+import org.zaproxy.zap.extension.pscanrulesBeta.ViewstateDecoder.DecodedViewstate;
+
+public class ViewstateDecoderUnitTest {
+
+	private static final byte[] DATA = "/wEPDwUKLTI2NjY4ODQ0NQ9kFgICAw9kFgI".getBytes(StandardCharsets.US_ASCII);
+
+	@Test
+	public void shouldDecodeSingleValue() throws IOException {
+		// Given
+		String encoded = Base64.encodeBase64String(DATA);
+		// When
+		DecodedViewstate decoded = new ViewstateDecoder().decode(Collections.singletonList(encoded));
+		// Then
+		assertEquals(new String(DATA, StandardCharsets.US_ASCII), decoded.toString());
+		assertFalse(decoded.isTruncated());
+	}
+
+	@Test
+	public void shouldDecodeValuesSplitAtAnyPosition() throws IOException {
+		// Given
+		String encoded = Base64.encodeBase64String(DATA);
+		for (int first = 0; first <= encoded.length(); first++) {
+			for (int second = first; second <= encoded.length(); second++) {
+				List<String> values = Arrays.asList(encoded.substring(0, first), encoded.substring(first, second),
+						encoded.substring(second));
+				// When
+				DecodedViewstate decoded = new ViewstateDecoder().decode(values);
+				// Then
+				assertEquals("Split at " + first + " and " + second, new String(DATA, StandardCharsets.US_ASCII),
+						decoded.toString());
+			}
+		}
+	}
+
+	@Test
+	public void shouldDecodeWithAndWithoutPadding() throws IOException {
+		// Given
+		ViewstateDecoder decoder = new ViewstateDecoder();
+		// When / Then
+		assertEquals("a", decoder.decode(Collections.singletonList("YQ==")).toString());
+		assertEquals("a", decoder.decode(Collections.singletonList("YQ")).toString());
+		assertEquals("ab", decoder.decode(Collections.singletonList("YWI=")).toString());
+		assertEquals("ab", decoder.decode(Collections.singletonList("YWI")).toString());
+		assertEquals("abc", decoder.decode(Collections.singletonList("YWJj")).toString());
+		assertEquals("", decoder.decode(Collections.<String> emptyList()).toString());
+	}
+
+	@Test
+	public void shouldStopDecodingAtPadding() throws IOException {
+		// Given
+		List<String> values = Collections.singletonList("YQ==YWJj");
+		// When
+		DecodedViewstate decoded = new ViewstateDecoder().decode(values);
+		// Then
+		assertEquals("a", decoded.toString());
+	}
+
+	@Test
+	public void shouldIgnoreWhiteSpace() throws IOException {
+		// Given
+		List<String> values = Arrays.asList("YW\r\n", " Jj\tZA", "==");
+		// When
+		DecodedViewstate decoded = new ViewstateDecoder().decode(values);
+		// Then
+		assertEquals("abcd", decoded.toString());
+	}
+
+	@Test(expected = IOException.class)
+	public void shouldFailOnInvalidCharacter() throws IOException {
+		new ViewstateDecoder().decode(Collections.singletonList("YW*j"));
+	}
+
+	@Test(expected = IOException.class)
+	public void shouldFailOnNonAsciiCharacter() throws IOException {
+		new ViewstateDecoder().decode(Collections.singletonList("YWéj"));
+	}
+
+	@Test(expected = IOException.class)
+	public void shouldFailOnSingleCharacterLeftOver() throws IOException {
+		new ViewstateDecoder().decode(Collections.singletonList("YWJjZ"));
+	}
+
+	@Test
+	public void shouldTruncateAtMaximumLength() throws IOException {
+		// Given
+		String encoded = Base64.encodeBase64String(DATA);
+		// When
+		DecodedViewstate decoded = new ViewstateDecoder(10).decode(Collections.singletonList(encoded));
+		// Then
+		assertTrue(decoded.isTruncated());
+		assertEquals(new String(DATA, 0, 10, StandardCharsets.US_ASCII), decoded.toString());
+	}
+
+	@Test
+	public void shouldNotTruncateAtExactlyMaximumLength() throws IOException {
+		// Given
+		String encoded = Base64.encodeBase64String(DATA);
+		// When
+		DecodedViewstate decoded = new ViewstateDecoder(DATA.length).decode(Collections.singletonList(encoded));
+		// Then
+		assertFalse(decoded.isTruncated());
+		assertEquals(DATA.length, decoded.length());
+	}
+
+	@Test
+	public void shouldExposeSubSequencesOfTheDecodedData() throws IOException {
+		// Given
+		DecodedViewstate decoded = new ViewstateDecoder().decode(Collections.singletonList("YWJjZGVm"));
+		// When
+		CharSequence sub = decoded.subSequence(1, 4);
+		// Then
+		assertEquals("bcd", sub.toString());
+		assertEquals('c', sub.charAt(1));
+	}
+
+	@Test
+	public void shouldOpenPlainDataWithoutInflating() throws IOException {
+		// Given
+		List<String> values = Collections.singletonList(Base64.encodeBase64String(DATA));
+		// When
+		byte[] read = readAll(new ViewstateDecoder().open(values, true));
+		// Then
+		assertArrayEquals(DATA, read);
+	}
+
+	@Test
+	public void shouldInflateGzipData() throws IOException {
+		// Given
+		List<String> values = Collections.singletonList(Base64.encodeBase64String(gzip(DATA)));
+		// When
+		byte[] inflated = readAll(new ViewstateDecoder().open(values, true));
+		byte[] notInflated = readAll(new ViewstateDecoder().open(values, false));
+		// Then
+		assertArrayEquals(DATA, inflated);
+		assertArrayEquals(gzip(DATA), notInflated);
+	}
+
+	@Test
+	public void shouldLimitInflatedData() throws IOException {
+		// Given
+		byte[] bomb = new byte[1024 * 1024];
+		List<String> values = Collections.singletonList(Base64.encodeBase64String(gzip(bomb)));
+		// When
+		byte[] read = readAll(new ViewstateDecoder(1000).open(values, true));
+		// Then
+		assertEquals(1000, read.length);
+	}
+
+	@Test
+	public void shouldFindBytesAcrossBufferBoundaries() throws IOException {
+		// Given
+		byte[] data = new byte[50000];
+		new Random(1).nextBytes(data);
+		byte[] needle = "NEEDLE".getBytes(StandardCharsets.US_ASCII);
+		for (int position : new int[] { 0, 8190, 8192 - 3, 16380, data.length - needle.length }) {
+			byte[] haystack = data.clone();
+			System.arraycopy(needle, 0, haystack, position, needle.length);
+			List<String> values = Collections.singletonList(Base64.encodeBase64String(gzip(haystack)));
+			// When
+			boolean found = ViewstateDecoder.contains(new ViewstateDecoder().open(values, true), needle);
+			// Then
+			assertTrue("At " + position, found);
+		}
+	}
+
+	@Test
+	public void shouldNotFindMissingBytes() throws IOException {
+		// Given
+		List<String> values = Collections.singletonList(Base64.encodeBase64String(DATA));
+		// When
+		boolean found = ViewstateDecoder.contains(new ViewstateDecoder().open(values, true),
+				"NEEDLE".getBytes(StandardCharsets.US_ASCII));
+		// Then
+		assertFalse(found);
+	}
+
+	private static byte[] gzip(byte[] data) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+			gzip.write(data);
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		in.close();
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.tokengen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ListResourceBundle;
+import java.util.Random;
+import java.util.ResourceBundle;
+
+import org.junit.Test;
+import org.zaproxy.zap.extension.tokengen.TokenAnalysisTestResult.Result;
+
+public class TokenCorrelationAnalyserUnitTest {
+
+	private static final ResourceBundle MESSAGES = new ListResourceBundle() {
+
+		@Override
+		protected Object[][] getContents() {
+			return new Object[][] {
+					{ "tokengen.analyse.summary.insufficient", "insufficient" },
+					{ "tokengen.analyse.summary.notimings", "notimings" },
+					{ "tokengen.analyse.summary.notnumeric", "notnumeric" } };
+		}
+	};
+
+	@Test
+	public void shouldReportNotNumericForTokensWithDecimalPoint() {
+		// Given
+		CharacterFrequencyMap cfm = createMap("1234567890.123456", "1234567890.223456", "1234567890.323456");
+		// When
+		TokenAnalysisTestResult result = new TokenCorrelationAnalyser(cfm, MESSAGES).checkSequentialDeltas();
+		// Then
+		assertEquals(Result.MEDIUM, result.getResult());
+		assertEquals("notnumeric", result.getSummary());
+	}
+
+	@Test
+	public void shouldReportNotNumericForTokensWithDashes() {
+		// Given
+		CharacterFrequencyMap cfm = createMap("12-34", "12-35", "-", "12-36");
+		// When
+		TokenAnalysisTestResult result = new TokenCorrelationAnalyser(cfm, MESSAGES).checkSequentialDeltas();
+		// Then
+		assertEquals("notnumeric", result.getSummary());
+	}
+
+	@Test
+	public void shouldReportNotNumericForEmptyTokens() {
+		// Given
+		CharacterFrequencyMap cfm = createMap("1", "", "3", "4");
+		// When
+		TokenAnalysisTestResult result = new TokenCorrelationAnalyser(cfm, MESSAGES).checkSequentialDeltas();
+		// Then
+		assertEquals("notnumeric", result.getSummary());
+	}
+
+	@Test
+	public void shouldStillCheckCharactersForTimestampCorrelationOfNonNumericTokens() {
+		// Given
+		CharacterFrequencyMap cfm = new CharacterFrequencyMap();
+		for (int i = 0; i < 50; i++) {
+			cfm.addToken("1234567890." + (100 + i), 1000L + i);
+		}
+		// When
+		TokenAnalysisTestResult result = new TokenCorrelationAnalyser(cfm, MESSAGES).checkTimestampCorrelation();
+		// Then
+		assertTrue(result.getDetails().contains("Token value: not numeric"));
+		assertEquals(Result.FAIL, result.getResult());
+	}
+
+	@Test
+	public void shouldDetectIncrementingNumericTokens() {
+		// Given
+		CharacterFrequencyMap cfm = new CharacterFrequencyMap();
+		for (int i = 0; i < 50; i++) {
+			cfm.addToken(Integer.toString(1000 + i * 7));
+		}
+		// When
+		TokenAnalysisTestResult result = new TokenCorrelationAnalyser(cfm, MESSAGES).checkSequentialDeltas();
+		// Then
+		assertEquals(Result.FAIL, result.getResult());
+	}
+
+	@Test
+	public void shouldReportSubstringRepeatedAtDifferentPositions() {
+		// Given
+		Random random = new Random(1);
+		CharacterFrequencyMap cfm = new CharacterFrequencyMap();
+		for (int i = 0; i < 200; i++) {
+			StringBuilder token = new StringBuilder(randomToken(random, 32));
+			if (i % 2 == 0) {
+				int position = random.nextInt(24);
+				token.replace(position, position + 8, "~~~~~~~~");
+			}
+			cfm.addToken(token.toString());
+		}
+		// When
+		TokenAnalysisTestResult result = new TokenCorrelationAnalyser(cfm, MESSAGES).checkRepeatedNgrams();
+		// Then
+		assertEquals(Result.FAIL, result.getResult());
+		assertFalse(result.getFailures().isEmpty());
+		assertEquals("Substring ~~~~ appears in 100 of 200 tokens", result.getFailures().get(0));
+	}
+
+	@Test
+	public void shouldNotReportSubstringsOfRandomTokens() {
+		// Given
+		Random random = new Random(1);
+		CharacterFrequencyMap cfm = new CharacterFrequencyMap();
+		for (int i = 0; i < 200; i++) {
+			cfm.addToken(randomToken(random, 32));
+		}
+		// When
+		TokenAnalysisTestResult result = new TokenCorrelationAnalyser(cfm, MESSAGES).checkRepeatedNgrams();
+		// Then
+		assertEquals(Result.PASS, result.getResult());
+		assertTrue(result.getFailures().isEmpty());
+	}
+
+	private static String randomToken(Random random, int length) {
+		String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+		StringBuilder sb = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			sb.append(chars.charAt(random.nextInt(chars.length())));
+		}
+		return sb.toString();
+	}
+
+	private static CharacterFrequencyMap createMap(String... tokens) {
+		CharacterFrequencyMap cfm = new CharacterFrequencyMap();
+		for (String token : tokens) {
+			cfm.addToken(token);
+		}
+		return cfm;
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Zed Attack Proxy (ZAP) and its related class files.
+ * 
+ * ZAP is an HTTP/HTTPS proxy for assessing web application security.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ *   
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License. 
+ */
+package org.zaproxy.zap.extension.tokengen;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.zaproxy.zap.extension.tokengen.TokenEntropyEstimator.Estimator;
+
+public class TokenEntropyEstimatorUnitTest {
+
+	private static final double DELTA = 1e-9;
+
+	@Test
+	public void shouldHaveNoEntropyWithoutTokens() {
+		// Given
+		TokenEntropyEstimator estimator = new TokenEntropyEstimator();
+		// When / Then
+		assertEquals(0, estimator.getNumberOfPositions());
+		for (Estimator type : Estimator.values()) {
+			assertEquals(0, estimator.getTotalEntropy(type), DELTA);
+		}
+	}
+
+	@Test
+	public void shouldHaveNoEntropyForConstantPosition() {
+		// Given
+		TokenEntropyEstimator estimator = new TokenEntropyEstimator();
+		// When
+		estimator.addToken("a");
+		estimator.addToken("a");
+		estimator.addToken("a");
+		// Then
+		for (Estimator type : Estimator.values()) {
+			assertEquals(0, estimator.getEntropy(type, 0), DELTA);
+		}
+	}
+
+	@Test
+	public void shouldHaveSameEntropyForAllEstimatorsWithUniformFrequencies() {
+		// Given
+		TokenEntropyEstimator estimator = new TokenEntropyEstimator();
+		// When
+		estimator.addToken("a");
+		estimator.addToken("b");
+		estimator.addToken("c");
+		estimator.addToken("d");
+		// Then
+		for (Estimator type : Estimator.values()) {
+			assertEquals(2, estimator.getEntropy(type, 0), DELTA);
+		}
+	}
+
+	@Test
+	public void shouldEstimateSkewedFrequencies() {
+		// Given
+		TokenEntropyEstimator estimator = new TokenEntropyEstimator();
+		// When
+		estimator.addToken("a");
+		estimator.addToken("a");
+		estimator.addToken("a");
+		estimator.addToken("b");
+		// Then
+		double shannon = -(0.75 * log2(0.75) + 0.25 * log2(0.25));
+		assertEquals(shannon, estimator.getEntropy(Estimator.SHANNON, 0), DELTA);
+		assertEquals(-log2(0.75), estimator.getEntropy(Estimator.MIN, 0), DELTA);
+		assertEquals(-log2(0.75 * 0.75 + 0.25 * 0.25), estimator.getEntropy(Estimator.COLLISION, 0), DELTA);
+	}
+
+	@Test
+	public void shouldOrderEstimatorsAsMinCollisionShannon() {
+		// Given
+		TokenEntropyEstimator estimator = new TokenEntropyEstimator();
+		// When
+		for (String token : new String[] { "a", "a", "a", "a", "b", "b", "c", "d" }) {
+			estimator.addToken(token);
+		}
+		// Then
+		double min = estimator.getEntropy(Estimator.MIN, 0);
+		double collision = estimator.getEntropy(Estimator.COLLISION, 0);
+		double shannon = estimator.getEntropy(Estimator.SHANNON, 0);
+		assertEquals(true, min <= collision && collision <= shannon);
+	}
+
+	@Test
+	public void shouldTrackPositionsOfTokensWithDifferentLengths() {
+		// Given
+		TokenEntropyEstimator estimator = new TokenEntropyEstimator();
+		// When
+		estimator.addToken("ab");
+		estimator.addToken("ac");
+		estimator.addToken("a");
+		estimator.addToken("adxy");
+		// Then
+		assertEquals(4, estimator.getNumberOfPositions());
+		double[] entropies = estimator.getEntropies(Estimator.MIN);
+		assertArrayEquals(new double[] { 0, log2(3), 0, 0 }, entropies, DELTA);
+		assertEquals(log2(3), estimator.getTotalEntropy(Estimator.MIN), DELTA);
+	}
+
+	private static double log2(double value) {
+		return Math.log(value) / Math.log(2);
+	}
+}